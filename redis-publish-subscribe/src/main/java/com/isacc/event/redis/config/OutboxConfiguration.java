@@ -0,0 +1,28 @@
+package com.isacc.event.redis.config;
+
+import com.isacc.event.redis.outbox.OutboxProperties;
+import com.isacc.event.redis.outbox.RedisOutbox;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+/**
+ * <p>
+ * 本地outbox，isacc.redis.outbox.enabled=true时开启
+ * </p>
+ *
+ * @author isacc 2019/09/11 15:10
+ * @since 1.0
+ */
+@Configuration
+@EnableConfigurationProperties(OutboxProperties.class)
+@ConditionalOnProperty(prefix = OutboxProperties.PREFIX, name = "enabled", havingValue = "true")
+public class OutboxConfiguration {
+
+    @Bean
+    RedisOutbox redisOutbox(StringRedisTemplate stringRedisTemplate, OutboxProperties properties) {
+        return new RedisOutbox(stringRedisTemplate, properties);
+    }
+}
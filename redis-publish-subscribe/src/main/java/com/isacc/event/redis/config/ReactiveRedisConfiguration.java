@@ -0,0 +1,95 @@
+package com.isacc.event.redis.config;
+
+import java.nio.charset.StandardCharsets;
+
+import com.isacc.event.redis.filter.FilteringMessageListener;
+import com.isacc.event.redis.publish.ReactiveBatchPublisher;
+import com.isacc.event.redis.reactive.ReactiveChannelSubscriber;
+import com.isacc.event.redis.reactive.ReactiveSubscribeProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.connection.ReactiveRedisConnectionFactory;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.listener.ReactiveRedisMessageListenerContainer;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+
+/**
+ * <p>
+ * 响应式订阅/发布，isacc.redis.reactive.enabled=true时开启
+ * </p>
+ *
+ * @author isacc 2019/09/06 11:20
+ * @since 1.0
+ */
+@Configuration
+@Slf4j
+@EnableConfigurationProperties(ReactiveSubscribeProperties.class)
+@ConditionalOnProperty(prefix = ReactiveSubscribeProperties.PREFIX, name = "enabled", havingValue = "true")
+public class ReactiveRedisConfiguration {
+
+    /**
+     * 响应式消息监听容器，所有频道共用一个lettuce连接
+     *
+     * @param reactiveRedisConnectionFactory ReactiveRedisConnectionFactory
+     * @return ReactiveRedisMessageListenerContainer
+     */
+    @Bean
+    ReactiveRedisMessageListenerContainer reactiveContainer(ReactiveRedisConnectionFactory reactiveRedisConnectionFactory) {
+        return new ReactiveRedisMessageListenerContainer(reactiveRedisConnectionFactory);
+    }
+
+    @Bean
+    ReactiveChannelSubscriber reactiveChannelSubscriber(ReactiveRedisMessageListenerContainer reactiveContainer,
+                                                        ReactiveSubscribeProperties properties) {
+        return new ReactiveChannelSubscriber(reactiveContainer, properties);
+    }
+
+    @Bean
+    ReactiveBatchPublisher reactiveBatchPublisher(ReactiveStringRedisTemplate reactiveStringRedisTemplate,
+                                                  ReactiveSubscribeProperties properties) {
+        return new ReactiveBatchPublisher(reactiveStringRedisTemplate, properties.getPublishConcurrency());
+    }
+
+    /**
+     * 订阅cat、fish频道，交给FilteringMessageListener按过滤条件分发给各个监听器，
+     * 开启响应式订阅时不会创建RedisMessageListenerContainer，消息只走这一条路径；
+     * 每个频道单独订阅，溢出策略按频道配置，容器关闭时取消订阅
+     *
+     * @param reactiveChannelSubscriber ReactiveChannelSubscriber
+     * @param filteringMessageListener  FilteringMessageListener
+     * @return Disposable
+     */
+    @Bean(destroyMethod = "dispose")
+    Disposable reactiveSubscriptions(ReactiveChannelSubscriber reactiveChannelSubscriber,
+                                     FilteringMessageListener filteringMessageListener) {
+        return Disposables.composite(
+                dispatchTo(reactiveChannelSubscriber, filteringMessageListener, "cat"),
+                dispatchTo(reactiveChannelSubscriber, filteringMessageListener, "fish")
+        );
+    }
+
+    static Disposable dispatchTo(ReactiveChannelSubscriber reactiveChannelSubscriber,
+                                 MessageListener listener, String pattern) {
+        byte[] patternBytes = pattern.getBytes(StandardCharsets.UTF_8);
+        // 保留追踪包装，由FilteringMessageListener去掉包装、设置追踪上下文并记录redis.handle
+        return reactiveChannelSubscriber.receiveWrapped(pattern).subscribe(
+                message -> {
+                    // 和RedisMessageListenerContainer一样隔离监听器的异常，异常抛到这里会取消整个订阅
+                    try {
+                        listener.onMessage(new DefaultMessage(
+                                        message.getChannel().getBytes(StandardCharsets.UTF_8),
+                                        message.getMessage().getBytes(StandardCharsets.UTF_8)),
+                                patternBytes);
+                    } catch (Exception e) {
+                        log.error("reactive subscription {} listener error, channel: {}", pattern, message.getChannel(), e);
+                    }
+                },
+                e -> log.error("reactive subscription {} error", pattern, e));
+    }
+}
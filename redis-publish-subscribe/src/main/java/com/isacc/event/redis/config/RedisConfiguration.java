@@ -1,10 +1,16 @@
 package com.isacc.event.redis.config;
 
+import java.util.Arrays;
+
 import com.fasterxml.jackson.annotation.JsonAutoDetect;
 import com.fasterxml.jackson.annotation.PropertyAccessor;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.isacc.event.redis.filter.FilteringMessageListener;
+import com.isacc.event.redis.filter.SubscriptionFilter;
 import com.isacc.event.redis.listener.CatListener;
 import com.isacc.event.redis.listener.FishListener;
+import com.isacc.event.redis.reactive.ReactiveSubscribeProperties;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.cache.annotation.CachingConfigurerSupport;
 import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.context.annotation.Bean;
@@ -51,28 +57,43 @@ public class RedisConfiguration extends CachingConfigurerSupport {
      * redis消息监听器容器
      * 可以添加多个去监听不同话题的redis监听器，只需要把消息监听器和相应的消息订阅处理器绑定，
      * 该消息监听器通过反射技术调用消息订阅处理器的相关方法进行一些业务处理
+     * <p>
+     * 开启响应式订阅(isacc.redis.reactive.enabled=true)时不创建，由ReactiveRedisConfiguration订阅
      *
      * @param connectionFactory            RedisConnectionFactory
-     * @param catAdapter                   MessageListenerAdapter
-     * @param fishAdapter                  MessageListenerAdapter
+     * @param filteringMessageListener     FilteringMessageListener
      * @param simpleEventAsyncTaskExecutor SimpleAsyncTaskExecutor
      * @return RedisMessageListenerContainer
      */
     @Bean
+    @ConditionalOnProperty(prefix = ReactiveSubscribeProperties.PREFIX, name = "enabled", havingValue = "false", matchIfMissing = true)
     RedisMessageListenerContainer container(RedisConnectionFactory connectionFactory,
-                                            MessageListenerAdapter catAdapter,
-                                            MessageListenerAdapter fishAdapter,
+                                            FilteringMessageListener filteringMessageListener,
                                             SimpleAsyncTaskExecutor simpleEventAsyncTaskExecutor) {
         RedisMessageListenerContainer container = new RedisMessageListenerContainer();
         container.setConnectionFactory(connectionFactory);
         // 设置线程池
         container.setTaskExecutor(simpleEventAsyncTaskExecutor);
-        // 这个container 可以添加多个 messageListener 订阅了一个叫cat 的通道
-        container.addMessageListener(catAdapter, new PatternTopic("cat"));
-        container.addMessageListener(fishAdapter, new PatternTopic("fish"));
+        // 订阅cat、fish通道，由filteringMessageListener按订阅条件分发给具体的监听器
+        container.addMessageListener(filteringMessageListener, Arrays.asList(new PatternTopic("cat"), new PatternTopic("fish")));
         return container;
     }
 
+    /**
+     * 按订阅过滤条件分发消息，过滤条件在注册时编进索引，不满足条件的消息不会被反序列化
+     *
+     * @param catAdapter  MessageListenerAdapter
+     * @param fishAdapter MessageListenerAdapter
+     * @return FilteringMessageListener
+     */
+    @Bean
+    FilteringMessageListener filteringMessageListener(MessageListenerAdapter catAdapter,
+                                                      MessageListenerAdapter fishAdapter) {
+        return new FilteringMessageListener()
+                .register(SubscriptionFilter.builder().channel("cat").build(), catAdapter)
+                .register(SubscriptionFilter.builder().channel("fish").build(), fishAdapter);
+    }
+
     /**
      * 消息监听器适配器，绑定消息处理器
      *
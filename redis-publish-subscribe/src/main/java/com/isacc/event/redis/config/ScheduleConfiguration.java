@@ -0,0 +1,51 @@
+package com.isacc.event.redis.config;
+
+import com.isacc.event.redis.schedule.PeriodicPublishScheduler;
+import com.isacc.event.redis.schedule.PublishScheduleProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * <p>
+ * 周期发布调度
+ * </p>
+ *
+ * @author isacc 2019/09/16 14:35
+ * @since 1.0
+ */
+@Configuration
+@EnableConfigurationProperties(PublishScheduleProperties.class)
+public class ScheduleConfiguration {
+
+    /**
+     * 执行发布的线程池，一个频道发布慢了不影响其他频道
+     *
+     * @param properties PublishScheduleProperties
+     * @return ThreadPoolTaskExecutor
+     */
+    @Bean
+    ThreadPoolTaskExecutor publishWorkerExecutor(PublishScheduleProperties properties) {
+        ThreadPoolTaskExecutor threadPool = new ThreadPoolTaskExecutor();
+        // 设置核心线程数
+        threadPool.setCorePoolSize(properties.getWorkerPoolSize());
+        // 设置最大线程数
+        threadPool.setMaxPoolSize(properties.getWorkerPoolSize());
+        // 线程池所使用的缓冲队列，满了这一批发布会被跳过，不会阻塞时间轮
+        threadPool.setQueueCapacity(properties.getWorkerQueueCapacity());
+        // 线程名称前缀
+        threadPool.setThreadNamePrefix("PublishWorker");
+        return threadPool;
+    }
+
+    @Bean(initMethod = "start", destroyMethod = "stop")
+    PeriodicPublishScheduler periodicPublishScheduler(ThreadPoolTaskExecutor publishWorkerExecutor,
+                                                      PublishScheduleProperties properties) {
+        return new PeriodicPublishScheduler(publishWorkerExecutor,
+                properties.getTick().toMillis(),
+                properties.getWheelSize(),
+                properties.getJitterRatio(),
+                properties.getBatchSize());
+    }
+}
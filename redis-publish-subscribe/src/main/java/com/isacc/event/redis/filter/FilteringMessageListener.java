@@ -0,0 +1,89 @@
+package com.isacc.event.redis.filter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.isacc.event.trace.TraceContext;
+import com.isacc.event.trace.TraceEnvelope;
+import com.isacc.event.trace.Tracer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+
+/**
+ * <p>
+ * 按订阅过滤条件分发消息的监听器
+ * </p>
+ * <p>
+ * 注册到RedisMessageListenerContainer上(开启响应式订阅时由响应式订阅调用)代替各个监听器，收到消息后先用消息头
+ * 去{@link SubscriptionIndex}里找候选，再只抽取候选需要的消息体字段，只有满足条件的监听器才会收到消息，
+ * 没有订阅需要消息体字段时消息体不会被解析
+ * </p>
+ * <p>
+ * 被采样的消息在这里去掉追踪包装，分发期间追踪上下文放在当前线程上，整个分发记录一个span
+ * </p>
+ *
+ * @author isacc 2019/09/09 15:40
+ * @since 1.0
+ */
+@Slf4j
+public class FilteringMessageListener implements MessageListener {
+
+    private final SubscriptionIndex<MessageListener> index = new SubscriptionIndex<>();
+
+    /**
+     * 注册监听器
+     *
+     * @param filter   过滤条件
+     * @param listener 监听器
+     * @return this
+     */
+    public FilteringMessageListener register(SubscriptionFilter filter, MessageListener listener) {
+        index.register(filter, listener);
+        return this;
+    }
+
+    public boolean unregister(MessageListener listener) {
+        return index.unregister(listener);
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        long start = Tracer.nanoTime();
+        TraceContext traceContext = TraceEnvelope.context(message.getBody());
+        Message unwrapped = traceContext.isSampled() ?
+                new DefaultMessage(message.getChannel(), TraceEnvelope.body(message.getBody())) : message;
+        Tracer.setCurrent(traceContext);
+        try {
+            dispatch(unwrapped, pattern);
+        } finally {
+            Tracer.clearCurrent();
+            Tracer.getInstance().recordChild(traceContext, "redis.handle", start);
+        }
+    }
+
+    private void dispatch(Message message, byte[] pattern) {
+        Map<String, String> fieldValues = new HashMap<>(8);
+        fieldValues.put(SubscriptionFilter.CHANNEL, new String(message.getChannel(), StandardCharsets.UTF_8));
+        int matched = index.match(fieldValues,
+                payloadFields -> PayloadFieldExtractor.extract(message.getBody(), payloadFields, fieldValues),
+                listener -> deliver(listener, message, pattern));
+        if (matched == 0 && log.isTraceEnabled()) {
+            log.trace("no subscriber matched, message dropped: {}", fieldValues);
+        }
+    }
+
+    /**
+     * 一个监听器抛异常不能影响同一条消息的其他监听器
+     */
+    private static void deliver(MessageListener listener, Message message, byte[] pattern) {
+        try {
+            listener.onMessage(message, pattern);
+        } catch (Exception e) {
+            log.error("listener {} handle message error, channel: {}", listener,
+                    new String(message.getChannel(), StandardCharsets.UTF_8), e);
+        }
+    }
+}
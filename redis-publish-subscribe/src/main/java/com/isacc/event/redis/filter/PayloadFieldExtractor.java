@@ -0,0 +1,73 @@
+package com.isacc.event.redis.filter;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * <p>
+ * 从json消息体里只抽取过滤需要的顶层字段
+ * </p>
+ * <p>
+ * 用jackson的流式解析，不需要的字段直接跳过，需要的字段拿齐了就停止，不会把整个消息反序列化成对象；
+ * 消息体不是json对象(比如"i am cat")时不抽取任何字段
+ * </p>
+ *
+ * @author isacc 2019/09/09 15:10
+ * @since 1.0
+ */
+@Slf4j
+public final class PayloadFieldExtractor {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private PayloadFieldExtractor() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    /**
+     * 抽取字段，只取标量值，对象/数组字段忽略
+     *
+     * @param body   消息体
+     * @param fields 需要的字段
+     * @param target 抽取结果放到这里
+     */
+    public static void extract(byte[] body, Set<String> fields, Map<String, String> target) {
+        if (fields.isEmpty() || !looksLikeObject(body)) {
+            return;
+        }
+        int remaining = fields.size();
+        try (JsonParser parser = JSON_FACTORY.createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return;
+            }
+            while (remaining > 0 && parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.getCurrentName();
+                JsonToken token = parser.nextToken();
+                if (token.isStructStart()) {
+                    parser.skipChildren();
+                } else if (fields.contains(name) && token != JsonToken.VALUE_NULL) {
+                    if (target.put(name, parser.getText()) == null) {
+                        remaining--;
+                    }
+                }
+            }
+        } catch (IOException e) {
+            log.debug("payload is not valid json, skip field extraction: {}", e.getMessage());
+        }
+    }
+
+    private static boolean looksLikeObject(byte[] body) {
+        for (byte b : body) {
+            if (!Character.isWhitespace(b)) {
+                return b == '{';
+            }
+        }
+        return false;
+    }
+}
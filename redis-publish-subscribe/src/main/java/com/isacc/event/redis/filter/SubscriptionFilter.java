@@ -0,0 +1,143 @@
+package com.isacc.event.redis.filter;
+
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * <p>
+ * 声明式订阅过滤条件，多个条件之间是且的关系
+ * </p>
+ * <p>
+ * 以@开头的是消息头(目前只有{@link #CHANNEL})，其余是消息体json的顶层字段；
+ * eq/in条件注册时会被编进{@link SubscriptionIndex}的hash索引，其余条件只在命中索引后再判断
+ * </p>
+ * <p>
+ * 取值一律按json里的原始文本比较，不做数值归一化：eq("n", "1")能匹配{"n":1}和{"n":"1"}，
+ * 但匹配不了{"n":1.0}、{"n":1e0}
+ * </p>
+ *
+ * @author isacc 2019/09/09 14:05
+ * @since 1.0
+ */
+public final class SubscriptionFilter {
+
+    /**
+     * 消息实际所在的频道
+     */
+    public static final String CHANNEL = "@channel";
+
+    private static final SubscriptionFilter ALL = new SubscriptionFilter(Collections.emptyList());
+
+    private final List<Condition> conditions;
+
+    private SubscriptionFilter(List<Condition> conditions) {
+        this.conditions = conditions;
+    }
+
+    /**
+     * 不过滤，接收所有消息
+     *
+     * @return SubscriptionFilter
+     */
+    public static SubscriptionFilter all() {
+        return ALL;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    List<Condition> getConditions() {
+        return conditions;
+    }
+
+    static boolean isHeader(String field) {
+        return field.startsWith("@");
+    }
+
+    @Override
+    public String toString() {
+        return conditions.toString();
+    }
+
+    public static final class Builder {
+
+        private final List<Condition> conditions = new ArrayList<>();
+
+        private Builder() {
+        }
+
+        public Builder channel(String channel) {
+            return eq(CHANNEL, channel);
+        }
+
+        public Builder eq(String field, String value) {
+            return in(field, value);
+        }
+
+        public Builder in(String field, String... values) {
+            Set<String> set = new HashSet<>(Arrays.asList(values));
+            conditions.add(new Condition(field, "in " + set, set, set::contains));
+            return this;
+        }
+
+        public Builder prefix(String field, String prefix) {
+            conditions.add(new Condition(field, "prefix " + prefix, null, value -> value.startsWith(prefix)));
+            return this;
+        }
+
+        public Builder exists(String field) {
+            conditions.add(new Condition(field, "exists", null, value -> true));
+            return this;
+        }
+
+        public Builder where(String field, Predicate<String> predicate) {
+            conditions.add(new Condition(field, "where", null, predicate));
+            return this;
+        }
+
+        public SubscriptionFilter build() {
+            return conditions.isEmpty() ? ALL : new SubscriptionFilter(Collections.unmodifiableList(new ArrayList<>(conditions)));
+        }
+    }
+
+    static final class Condition {
+
+        private final String field;
+        private final String desc;
+        /**
+         * eq/in条件的取值，不为空的才能建索引
+         */
+        private final Set<String> values;
+        private final Predicate<String> predicate;
+
+        private Condition(String field, String desc, Set<String> values, Predicate<String> predicate) {
+            this.field = Objects.requireNonNull(field, "field");
+            this.desc = desc;
+            this.values = values;
+            this.predicate = predicate;
+        }
+
+        String getField() {
+            return field;
+        }
+
+        Set<String> getValues() {
+            return values;
+        }
+
+        boolean isIndexable() {
+            return values != null;
+        }
+
+        boolean test(Map<String, String> fieldValues) {
+            String value = fieldValues.get(field);
+            return value != null && predicate.test(value);
+        }
+
+        @Override
+        public String toString() {
+            return field + " " + desc;
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package com.isacc.event.redis.filter;
+
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * <p>
+ * 订阅过滤条件的预编译索引
+ * </p>
+ * <p>
+ * 注册时每个订阅挑一个eq/in条件(优先消息头)作为索引键，编成 字段 -> 取值 -> 订阅 两层hash，
+ * 剩下的条件挂在叶子上；匹配时每个索引字段只查一次hash，再对命中的订阅判断剩余条件，
+ * 代价接近O(命中数)而不是O(订阅数)。没有eq/in条件的订阅放在兜底列表里逐个判断
+ * </p>
+ * <p>
+ * 匹配分两步：先只用消息头查索引拿到候选订阅，再算出这次真正要用的消息体字段
+ * (候选订阅剩余条件里的字段，加上以消息体字段为索引键的订阅和兜底订阅的字段)，
+ * 这些字段为空时消息体完全不解析，比如只按频道订阅时
+ * </p>
+ * <p>
+ * 注册/取消注册很少，用copy-on-write，匹配时读volatile快照，无锁
+ * </p>
+ *
+ * @param <T> 订阅者
+ * @author isacc 2019/09/09 14:30
+ * @since 1.0
+ */
+public class SubscriptionIndex<T> {
+
+    private final List<Entry<T>> entries = new ArrayList<>();
+
+    private volatile Snapshot<T> snapshot = new Snapshot<>(Collections.emptyList());
+
+    public synchronized void register(SubscriptionFilter filter, T subscriber) {
+        entries.add(new Entry<>(filter, subscriber));
+        snapshot = new Snapshot<>(entries);
+    }
+
+    public synchronized boolean unregister(T subscriber) {
+        boolean removed = entries.removeIf(entry -> entry.subscriber == subscriber);
+        if (removed) {
+            snapshot = new Snapshot<>(entries);
+        }
+        return removed;
+    }
+
+    /**
+     * 所有订阅用到的消息体字段
+     *
+     * @return 字段名
+     */
+    public Set<String> payloadFields() {
+        return snapshot.payloadFields;
+    }
+
+    /**
+     * 匹配消息，回调所有满足条件的订阅者
+     *
+     * @param fieldValues   消息头，需要时消息体字段也由payloadLoader放到这里
+     * @param payloadLoader 最多调用一次，参数是这次需要的消息体字段，不需要时不调用
+     * @param consumer      订阅者回调
+     * @return 命中的订阅者数量
+     */
+    public int match(Map<String, String> fieldValues, Consumer<Set<String>> payloadLoader, Consumer<T> consumer) {
+        Snapshot<T> current = snapshot;
+        List<Entry<T>> headerCandidates = lookup(current.headerIndex, fieldValues, null);
+        Set<String> needed = current.basePayloadFields;
+        if (headerCandidates != null) {
+            for (Entry<T> candidate : headerCandidates) {
+                if (!candidate.payloadFields.isEmpty() && !needed.containsAll(candidate.payloadFields)) {
+                    needed = new HashSet<>(needed);
+                    needed.addAll(candidate.payloadFields);
+                }
+            }
+        }
+        if (!needed.isEmpty()) {
+            payloadLoader.accept(needed);
+        }
+        List<Entry<T>> candidates = lookup(current.payloadIndex, fieldValues, headerCandidates);
+        int matched = candidates == null ? 0 : dispatch(candidates, fieldValues, consumer);
+        return matched + dispatch(current.unindexed, fieldValues, consumer);
+    }
+
+    private static <T> List<Entry<T>> lookup(Map<String, Map<String, List<Entry<T>>>> index,
+                                             Map<String, String> fieldValues,
+                                             List<Entry<T>> candidates) {
+        List<Entry<T>> result = candidates;
+        // 索引里的列表是共享的，要合并时先复制一份
+        boolean copied = false;
+        for (Map.Entry<String, Map<String, List<Entry<T>>>> indexed : index.entrySet()) {
+            String value = fieldValues.get(indexed.getKey());
+            List<Entry<T>> hit = value == null ? null : indexed.getValue().get(value);
+            if (hit == null) {
+                continue;
+            }
+            if (result == null) {
+                result = hit;
+                continue;
+            }
+            if (!copied) {
+                result = new ArrayList<>(result);
+                copied = true;
+            }
+            result.addAll(hit);
+        }
+        return result;
+    }
+
+    private int dispatch(List<Entry<T>> candidates, Map<String, String> fieldValues, Consumer<T> consumer) {
+        int matched = 0;
+        for (Entry<T> candidate : candidates) {
+            if (candidate.test(fieldValues)) {
+                consumer.accept(candidate.subscriber);
+                matched++;
+            }
+        }
+        return matched;
+    }
+
+    private static final class Entry<T> {
+
+        private final SubscriptionFilter filter;
+        private final T subscriber;
+        /**
+         * 作为索引键的条件，可能为空
+         */
+        private final SubscriptionFilter.Condition key;
+        /**
+         * 命中索引后还需要判断的条件
+         */
+        private final SubscriptionFilter.Condition[] residual;
+        /**
+         * 所有条件用到的消息体字段
+         */
+        private final Set<String> payloadFields;
+
+        private Entry(SubscriptionFilter filter, T subscriber) {
+            this.filter = filter;
+            this.subscriber = Objects.requireNonNull(subscriber, "subscriber");
+            List<SubscriptionFilter.Condition> conditions = new ArrayList<>(filter.getConditions());
+            SubscriptionFilter.Condition chosen = conditions.stream()
+                    .filter(SubscriptionFilter.Condition::isIndexable)
+                    .min(Comparator.comparing(condition -> SubscriptionFilter.isHeader(condition.getField()) ? 0 : 1))
+                    .orElse(null);
+            conditions.remove(chosen);
+            this.key = chosen;
+            this.residual = conditions.toArray(new SubscriptionFilter.Condition[0]);
+            this.payloadFields = filter.getConditions().stream()
+                    .map(SubscriptionFilter.Condition::getField)
+                    .filter(field -> !SubscriptionFilter.isHeader(field))
+                    .collect(Collectors.toSet());
+        }
+
+        private boolean isHeaderIndexed() {
+            return key != null && SubscriptionFilter.isHeader(key.getField());
+        }
+
+        private boolean test(Map<String, String> fieldValues) {
+            for (SubscriptionFilter.Condition condition : residual) {
+                if (!condition.test(fieldValues)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public String toString() {
+            return subscriber + " " + filter;
+        }
+    }
+
+    private static final class Snapshot<T> {
+
+        /**
+         * 以消息头为索引键的订阅
+         */
+        private final Map<String, Map<String, List<Entry<T>>>> headerIndex = new HashMap<>();
+        /**
+         * 以消息体字段为索引键的订阅
+         */
+        private final Map<String, Map<String, List<Entry<T>>>> payloadIndex = new HashMap<>();
+        private final List<Entry<T>> unindexed = new ArrayList<>();
+        /**
+         * 不管消息头是什么都要解析的字段：payloadIndex和unindexed里订阅用到的消息体字段
+         */
+        private final Set<String> basePayloadFields;
+        private final Set<String> payloadFields;
+
+        private Snapshot(List<Entry<T>> entries) {
+            Set<String> base = new HashSet<>();
+            Set<String> fields = new HashSet<>();
+            for (Entry<T> entry : entries) {
+                fields.addAll(entry.payloadFields);
+                if (entry.key == null) {
+                    unindexed.add(entry);
+                    base.addAll(entry.payloadFields);
+                    continue;
+                }
+                Map<String, Map<String, List<Entry<T>>>> index;
+                if (entry.isHeaderIndexed()) {
+                    index = headerIndex;
+                } else {
+                    index = payloadIndex;
+                    base.addAll(entry.payloadFields);
+                }
+                Map<String, List<Entry<T>>> byValue = index.computeIfAbsent(entry.key.getField(), field -> new HashMap<>());
+                for (String value : entry.key.getValues()) {
+                    byValue.computeIfAbsent(value, v -> new ArrayList<>()).add(entry);
+                }
+            }
+            this.basePayloadFields = Collections.unmodifiableSet(base);
+            this.payloadFields = Collections.unmodifiableSet(fields);
+        }
+    }
+}
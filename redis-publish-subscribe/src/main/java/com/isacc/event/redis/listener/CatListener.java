@@ -26,6 +26,6 @@ public class CatListener implements MessageListener {
 
     @Override
     public void onMessage(Message message, byte[] bytes) {
-        log.debug("CatListener message: {}", message.toString());
+        log.debug("CatListener message: {}", message);
     }
 }
@@ -26,6 +26,6 @@ public class FishListener implements MessageListener {
 
     @Override
     public void onMessage(Message message, byte[] bytes) {
-        log.debug("FishListener message: {}", message.toString());
+        log.debug("FishListener message: {}", message);
     }
 }
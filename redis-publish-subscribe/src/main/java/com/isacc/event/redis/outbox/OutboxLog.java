@@ -0,0 +1,326 @@
+package com.isacc.event.redis.outbox;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * <p>
+ * 基于内存映射文件的分段追加日志
+ * </p>
+ * <p>
+ * 每个段固定大小，文件名是段的起始offset，offset是全局的字节位置；
+ * 一条记录的格式为 [int 长度][int crc32][short 频道长度][频道][消息]，长度最后写，
+ * 长度为0表示后面还没写，为-1表示该段已写满、接着读下一个段
+ * </p>
+ * <p>
+ * 写入只是写内存映射，由{@link #flush()}统一force到磁盘(group commit)，
+ * 进程崩溃时page cache里的数据不会丢，机器掉电只会丢最后一次flush之后的数据
+ * </p>
+ *
+ * @author isacc 2019/09/11 10:10
+ * @since 1.0
+ */
+@Slf4j
+public class OutboxLog implements Closeable {
+
+    private static final String SUFFIX = ".log";
+    private static final int HEADER_SIZE = 8;
+    private static final int END_OF_SEGMENT = -1;
+
+    private final Path directory;
+    private final int segmentSize;
+    private final ConcurrentNavigableMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+    /**
+     * 只有持有this锁的写线程会修改
+     */
+    private Segment active;
+    /**
+     * 已写入的位置，读线程只读这个位置之前的数据
+     */
+    private volatile long writeOffset;
+    /**
+     * 已force到磁盘的位置
+     */
+    private volatile long flushedOffset;
+    private final Object flushMonitor = new Object();
+
+    public OutboxLog(Path directory, int segmentSize) throws IOException {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        Files.createDirectories(directory);
+        try (Stream<Path> files = Files.list(directory)) {
+            files.filter(path -> path.getFileName().toString().endsWith(SUFFIX))
+                    .forEach(this::openSegment);
+        }
+        if (segments.isEmpty()) {
+            active = createSegment(0L);
+            writeOffset = 0L;
+        } else {
+            active = segments.lastEntry().getValue();
+            writeOffset = recover(active);
+        }
+        flushedOffset = writeOffset;
+        log.info("outbox log opened at {}, segments: {}, write offset: {}", directory, segments.size(), writeOffset);
+    }
+
+    /**
+     * 追加一条消息
+     *
+     * @param channel 频道
+     * @param message 消息
+     * @return 该消息写完后的offset，可以用来{@link #awaitFlushed(long, long)}
+     */
+    public synchronized long append(byte[] channel, byte[] message) throws IOException {
+        int bodySize = 2 + channel.length + message.length;
+        int recordSize = HEADER_SIZE + bodySize;
+        // 段尾要留4个字节写段结束标记
+        if (recordSize + 4 > segmentSize || channel.length > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("message too large for outbox segment: " + recordSize);
+        }
+        int position = (int) (writeOffset - active.base);
+        if (position + recordSize + 4 > segmentSize) {
+            active.buffer.putInt(position, END_OF_SEGMENT);
+            active = createSegment(active.base + segmentSize);
+            position = 0;
+        }
+        ByteBuffer buffer = active.buffer.duplicate();
+        buffer.position(position + HEADER_SIZE);
+        buffer.putShort((short) channel.length).put(channel).put(message);
+        CRC32 crc = new CRC32();
+        buffer.position(position + HEADER_SIZE);
+        buffer.limit(position + recordSize);
+        crc.update(buffer);
+        active.buffer.putInt(position + 4, (int) crc.getValue());
+        // 长度最后写，读到长度不为0就是一条完整的记录
+        active.buffer.putInt(position, bodySize);
+        writeOffset = active.base + position + recordSize;
+        return writeOffset;
+    }
+
+    /**
+     * 从offset开始读取消息
+     *
+     * @param offset  开始位置
+     * @param max     最多读取条数
+     * @param records 读到的消息
+     * @return 下一次读取的开始位置，校验不过的记录连同所在段剩下的部分会被跳过
+     */
+    public long read(long offset, int max, List<OutboxRecord> records) {
+        long limit = writeOffset;
+        while (records.size() < max && offset < limit) {
+            Map.Entry<Long, Segment> entry = segments.floorEntry(offset);
+            if (entry == null || offset >= entry.getKey() + segmentSize) {
+                // offset所在的段已经没了(比如被手动删掉)，从后面最近的段接着读
+                Long next = segments.ceilingKey(offset);
+                if (next == null) {
+                    throw new IllegalStateException("outbox segment not found for offset " + offset);
+                }
+                log.warn("outbox segment not found for offset {}, skip to {}", offset, next);
+                offset = next;
+                continue;
+            }
+            Segment segment = entry.getValue();
+            ByteBuffer buffer = segment.buffer.duplicate();
+            int position = (int) (offset - segment.base);
+            int bodySize = position + 4 <= segmentSize ? buffer.getInt(position) : END_OF_SEGMENT;
+            if (bodySize == END_OF_SEGMENT) {
+                offset = segment.base + segmentSize;
+                continue;
+            }
+            if (!isValid(segment.buffer, position, bodySize)) {
+                // 段损坏或者段大小配置改了，记录边界已经找不回来，这个段剩下的部分只能跳过
+                long next = Math.min(segment.base + segmentSize, limit);
+                log.error("outbox segment {} corrupted at {}, skip {} bytes", segment.path, position, next - offset);
+                offset = next;
+                continue;
+            }
+            buffer.position(position + HEADER_SIZE);
+            byte[] channel = new byte[buffer.getShort()];
+            buffer.get(channel);
+            byte[] message = new byte[bodySize - 2 - channel.length];
+            buffer.get(message);
+            records.add(new OutboxRecord(offset, channel, message));
+            offset += HEADER_SIZE + bodySize;
+        }
+        return offset;
+    }
+
+    /**
+     * 把已写入的数据force到磁盘，由一个线程定时调用，一次force覆盖这段时间内所有的写入
+     */
+    public void flush() {
+        long target = writeOffset;
+        long flushed = flushedOffset;
+        if (target == flushed) {
+            return;
+        }
+        segments.subMap(baseOf(flushed), true, baseOf(target), true)
+                .values()
+                .forEach(segment -> segment.buffer.force());
+        synchronized (flushMonitor) {
+            flushedOffset = target;
+            flushMonitor.notifyAll();
+        }
+    }
+
+    /**
+     * 等待offset之前的数据落盘
+     *
+     * @param offset    {@link #append(byte[], byte[])}的返回值
+     * @param timeoutMs 超时时间
+     * @return 是否已落盘
+     */
+    public boolean awaitFlushed(long offset, long timeoutMs) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        synchronized (flushMonitor) {
+            long remaining = timeoutMs;
+            while (flushedOffset < offset && remaining > 0) {
+                flushMonitor.wait(remaining);
+                remaining = deadline - System.currentTimeMillis();
+            }
+            return flushedOffset >= offset;
+        }
+    }
+
+    /**
+     * 删除offset之前已经读完的段，当前写入的段不删
+     *
+     * @param offset 已经发布成功的位置
+     */
+    public void deleteBefore(long offset) {
+        for (Segment segment : segments.headMap(baseOf(offset), false).values()) {
+            if (segment == active) {
+                continue;
+            }
+            segments.remove(segment.base);
+            try {
+                segment.channel.close();
+                Files.deleteIfExists(segment.path);
+            } catch (IOException e) {
+                log.warn("delete outbox segment {} error", segment.path, e);
+            }
+        }
+    }
+
+    public long getWriteOffset() {
+        return writeOffset;
+    }
+
+    /**
+     * 最早的段的起始位置，offset文件丢失时从这里开始读
+     *
+     * @return offset
+     */
+    public long getStartOffset() {
+        return segments.firstKey();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        flush();
+        for (Segment segment : segments.values()) {
+            segment.channel.close();
+        }
+        segments.clear();
+    }
+
+    private long baseOf(long offset) {
+        return offset - offset % segmentSize;
+    }
+
+    private void openSegment(Path path) {
+        String name = path.getFileName().toString();
+        long base = Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+        try {
+            segments.put(base, new Segment(base, path, segmentSize));
+        } catch (IOException e) {
+            throw new IllegalStateException("open outbox segment " + path + " error", e);
+        }
+    }
+
+    private Segment createSegment(long base) throws IOException {
+        Path path = directory.resolve(String.format("%020d%s", base, SUFFIX));
+        Segment segment = new Segment(base, path, segmentSize);
+        segments.put(base, segment);
+        return segment;
+    }
+
+    /**
+     * 启动时扫描最后一个段，找到写入位置，crc不对的说明写到一半进程挂了，从这里开始截断
+     */
+    private long recover(Segment segment) throws IOException {
+        MappedByteBuffer buffer = segment.buffer;
+        int position = 0;
+        // 段尾不足一个记录头时也可能写了4个字节的段结束标记
+        while (position + 4 <= segmentSize) {
+            int bodySize = buffer.getInt(position);
+            if (bodySize == 0) {
+                return segment.base + position;
+            }
+            if (bodySize == END_OF_SEGMENT) {
+                // 段结束标记写了但是新段还没建出来
+                active = createSegment(segment.base + segmentSize);
+                return active.base;
+            }
+            if (!isValid(buffer, position, bodySize)) {
+                log.warn("outbox segment {} truncated at {}", segment.path, position);
+                for (int i = position; i < segmentSize; i++) {
+                    buffer.put(i, (byte) 0);
+                }
+                buffer.force();
+                return segment.base + position;
+            }
+            position += HEADER_SIZE + bodySize;
+        }
+        return segment.base + position;
+    }
+
+    /**
+     * 分配数组之前先校验长度都在段内，再校验crc
+     */
+    private boolean isValid(MappedByteBuffer buffer, int position, int bodySize) {
+        if (bodySize < 2 || bodySize > segmentSize - HEADER_SIZE - position) {
+            return false;
+        }
+        short channelSize = buffer.getShort(position + HEADER_SIZE);
+        return channelSize >= 0 && channelSize <= bodySize - 2 && crcMatches(buffer, position, bodySize);
+    }
+
+    private static boolean crcMatches(MappedByteBuffer buffer, int position, int bodySize) {
+        ByteBuffer body = buffer.duplicate();
+        body.position(position + HEADER_SIZE);
+        body.limit(position + HEADER_SIZE + bodySize);
+        CRC32 crc = new CRC32();
+        crc.update(body);
+        return (int) crc.getValue() == buffer.getInt(position + 4);
+    }
+
+    private static final class Segment {
+
+        private final long base;
+        private final Path path;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+
+        private Segment(long base, Path path, int size) throws IOException {
+            this.base = base;
+            this.path = path;
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.isacc.event.redis.outbox;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * <p>
+ * 持久化relay已经发布到redis的位置
+ * </p>
+ * <p>
+ * 文件里存两个long：offset和offset的取反，不一致说明写到一半挂了，当作没有记录
+ * </p>
+ *
+ * @author isacc 2019/09/11 11:20
+ * @since 1.0
+ */
+public class OutboxOffsetStore implements Closeable {
+
+    private static final int SIZE = 16;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(SIZE);
+
+    public OutboxOffsetStore(Path path) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    /**
+     * 读取上次的位置
+     *
+     * @return offset，没有记录时返回-1
+     */
+    public synchronized long load() throws IOException {
+        buffer.clear();
+        while (buffer.hasRemaining() && channel.read(buffer, buffer.position()) > 0) {
+            // 读满16个字节
+        }
+        if (buffer.hasRemaining()) {
+            return -1L;
+        }
+        long offset = buffer.getLong(0);
+        return offset == ~buffer.getLong(8) ? offset : -1L;
+    }
+
+    public synchronized void store(long offset) throws IOException {
+        buffer.clear();
+        buffer.putLong(offset).putLong(~offset).flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, buffer.position());
+        }
+        channel.force(false);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,59 @@
+package com.isacc.event.redis.outbox;
+
+import java.time.Duration;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * <p>
+ * 本地outbox配置
+ * </p>
+ *
+ * @author isacc 2019/09/11 11:40
+ * @since 1.0
+ */
+@Data
+@ConfigurationProperties(prefix = OutboxProperties.PREFIX)
+public class OutboxProperties {
+
+    public static final String PREFIX = "isacc.redis.outbox";
+
+    /**
+     * 是否开启outbox，开启后消息先写本地日志，再由后台线程发布到redis
+     */
+    private boolean enabled = false;
+    /**
+     * 日志目录
+     */
+    private String directory = "outbox";
+    /**
+     * 每个段的大小，启动后不要修改
+     */
+    private DataSize segmentSize = DataSize.ofMegabytes(64);
+    /**
+     * group commit的间隔，这段时间内的写入一次性force到磁盘
+     */
+    private Duration flushInterval = Duration.ofMillis(5);
+    /**
+     * 发布时是否等待消息落盘，不等待的话进程崩溃不会丢，机器掉电可能丢最后一个flushInterval的消息
+     */
+    private boolean awaitFlush = true;
+    /**
+     * 等待落盘的超时时间
+     */
+    private Duration awaitFlushTimeout = Duration.ofSeconds(1);
+    /**
+     * relay每批pipeline发布的最大条数
+     */
+    private int batchSize = 256;
+    /**
+     * 没有消息时relay的等待时间
+     */
+    private Duration idleInterval = Duration.ofMillis(10);
+    /**
+     * redis不可用时的最大重试间隔
+     */
+    private Duration maxRetryBackoff = Duration.ofSeconds(5);
+}
@@ -0,0 +1,34 @@
+package com.isacc.event.redis.outbox;
+
+/**
+ * <p>
+ * outbox里的一条待发布消息
+ * </p>
+ *
+ * @author isacc 2019/09/11 10:05
+ * @since 1.0
+ */
+public class OutboxRecord {
+
+    private final long offset;
+    private final byte[] channel;
+    private final byte[] message;
+
+    public OutboxRecord(long offset, byte[] channel, byte[] message) {
+        this.offset = offset;
+        this.channel = channel;
+        this.message = message;
+    }
+
+    public long getOffset() {
+        return offset;
+    }
+
+    public byte[] getChannel() {
+        return channel;
+    }
+
+    public byte[] getMessage() {
+        return message;
+    }
+}
@@ -0,0 +1,112 @@
+package com.isacc.event.redis.outbox;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+/**
+ * <p>
+ * 把outbox里的消息按批pipeline发布到redis
+ * </p>
+ * <p>
+ * 一批发布成功才持久化读取位置，redis不可用时指数退避重试同一批，至少发布一次
+ * </p>
+ *
+ * @author isacc 2019/09/11 14:02
+ * @since 1.0
+ */
+@Slf4j
+public class OutboxRelay implements Runnable {
+
+    private final OutboxLog outboxLog;
+    private final OutboxOffsetStore offsetStore;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final OutboxProperties properties;
+    private volatile boolean running = true;
+    private long readOffset;
+
+    public OutboxRelay(OutboxLog outboxLog,
+                       OutboxOffsetStore offsetStore,
+                       StringRedisTemplate stringRedisTemplate,
+                       OutboxProperties properties,
+                       long readOffset) {
+        this.outboxLog = outboxLog;
+        this.offsetStore = offsetStore;
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.properties = properties;
+        this.readOffset = readOffset;
+    }
+
+    @Override
+    public void run() {
+        List<OutboxRecord> batch = new ArrayList<>(properties.getBatchSize());
+        long backoff = 0L;
+        while (running) {
+            // 读日志、删段的异常也要接住，否则发布线程就此退出，outbox只进不出
+            try {
+                if (relay(batch)) {
+                    backoff = 0L;
+                } else {
+                    sleep(properties.getIdleInterval().toMillis());
+                }
+            } catch (Exception e) {
+                backoff = Math.min(Math.max(backoff * 2, 100L), properties.getMaxRetryBackoff().toMillis());
+                log.warn("outbox relay {} messages from offset {} error, retry after {}ms",
+                        batch.size(), readOffset, backoff, e);
+                sleep(backoff);
+            }
+        }
+    }
+
+    /**
+     * 读一批消息发布，发布成功后持久化读取位置并删除读完的段
+     *
+     * @param batch 复用的list
+     * @return 是否读到了消息
+     */
+    private boolean relay(List<OutboxRecord> batch) {
+        batch.clear();
+        long next = outboxLog.read(readOffset, properties.getBatchSize(), batch);
+        if (batch.isEmpty()) {
+            // 可能只是跳过了段结束标记
+            readOffset = next;
+            return false;
+        }
+        publish(batch);
+        readOffset = next;
+        try {
+            offsetStore.store(readOffset);
+        } catch (IOException e) {
+            // 下次启动会重复发布这部分消息
+            log.error("store outbox offset {} error", readOffset, e);
+        }
+        outboxLog.deleteBefore(readOffset);
+        return true;
+    }
+
+    public void stop() {
+        running = false;
+    }
+
+    private void publish(List<OutboxRecord> batch) {
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (OutboxRecord record : batch) {
+                connection.publish(record.getChannel(), record.getMessage());
+            }
+            return null;
+        });
+    }
+
+    private void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.isacc.event.redis.outbox;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ThreadFactory;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+/**
+ * <p>
+ * 本地持久化的发布出口
+ * </p>
+ * <p>
+ * 发布只是追加到本地内存映射日志(可选等待group commit落盘)，不受redis的RTT和可用性影响；
+ * 一个flusher线程定时force日志，一个relay线程把日志pipeline发布到redis并持久化读取位置，
+ * 进程崩溃、redis宕机后消息都不会丢
+ * </p>
+ *
+ * @author isacc 2019/09/11 14:40
+ * @since 1.0
+ */
+@Slf4j
+public class RedisOutbox implements InitializingBean, DisposableBean {
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final OutboxProperties properties;
+    private final ThreadFactory threadFactory = new ThreadFactoryBuilder()
+            .setNameFormat("outbox-%d")
+            .setDaemon(true)
+            .build();
+    private OutboxLog outboxLog;
+    private OutboxOffsetStore offsetStore;
+    private OutboxRelay relay;
+    private Thread relayThread;
+    private Thread flusherThread;
+    private volatile boolean running;
+
+    public RedisOutbox(StringRedisTemplate stringRedisTemplate, OutboxProperties properties) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.properties = properties;
+    }
+
+    /**
+     * 发布消息到outbox
+     * <p>
+     * 开启了await-flush时等待消息落盘，超时或者等待时被中断抛出IllegalStateException，
+     * 这时消息已经写进日志，进程不掉电的话仍会被发布，调用方按需重试(可能重复)
+     * </p>
+     *
+     * @param channel 频道
+     * @param message 消息
+     */
+    public void publish(String channel, String message) {
+        long offset;
+        try {
+            offset = outboxLog.append(channel.getBytes(StandardCharsets.UTF_8), message.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new IllegalStateException("append to outbox error", e);
+        }
+        if (!properties.isAwaitFlush()) {
+            return;
+        }
+        boolean flushed;
+        try {
+            flushed = outboxLog.awaitFlushed(offset, properties.getAwaitFlushTimeout().toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while waiting for outbox flush, offset: " + offset, e);
+        }
+        if (!flushed) {
+            throw new IllegalStateException(String.format("outbox flush timeout after %dms, channel: %s, offset: %d",
+                    properties.getAwaitFlushTimeout().toMillis(), channel, offset));
+        }
+    }
+
+    @Override
+    public void afterPropertiesSet() throws IOException {
+        Path directory = Paths.get(properties.getDirectory());
+        outboxLog = new OutboxLog(directory, (int) properties.getSegmentSize().toBytes());
+        offsetStore = new OutboxOffsetStore(directory.resolve("offset"));
+        long stored = offsetStore.load();
+        long readOffset = resolveReadOffset(stored, outboxLog.getStartOffset(), outboxLog.getWriteOffset());
+        log.info("outbox relay start from offset {}, stored offset: {}", readOffset, stored);
+        running = true;
+        relay = new OutboxRelay(outboxLog, offsetStore, stringRedisTemplate, properties, readOffset);
+        relayThread = threadFactory.newThread(relay);
+        flusherThread = threadFactory.newThread(this::flushLoop);
+        relayThread.start();
+        flusherThread.start();
+    }
+
+    /**
+     * relay从哪里开始读：没有记录(-1)或者记录的段已经删了从最早的段开始；
+     * 记录比日志还新(掉电丢了未落盘的日志)就从写入位置开始
+     *
+     * @param stored      offset文件里的位置
+     * @param startOffset 最早的段的起始位置
+     * @param writeOffset 日志的写入位置
+     * @return 开始读取的位置
+     */
+    static long resolveReadOffset(long stored, long startOffset, long writeOffset) {
+        return Math.min(Math.max(stored, startOffset), writeOffset);
+    }
+
+    private void flushLoop() {
+        long interval = properties.getFlushInterval().toMillis();
+        while (running) {
+            outboxLog.flush();
+            try {
+                Thread.sleep(interval);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        running = false;
+        relay.stop();
+        relayThread.interrupt();
+        flusherThread.interrupt();
+        relayThread.join(properties.getMaxRetryBackoff().toMillis());
+        flusherThread.join(properties.getMaxRetryBackoff().toMillis());
+        outboxLog.close();
+        offsetStore.close();
+    }
+}
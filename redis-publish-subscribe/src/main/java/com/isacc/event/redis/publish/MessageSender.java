@@ -1,45 +1,105 @@
 package com.isacc.event.redis.publish;
 
-import javax.annotation.Resource;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import javax.annotation.PostConstruct;
 
-import org.springframework.beans.factory.annotation.Autowired;
+import com.isacc.event.redis.outbox.RedisOutbox;
+import com.isacc.event.redis.schedule.PeriodicPublishScheduler;
+import com.isacc.event.trace.TraceContext;
+import com.isacc.event.trace.TraceEnvelope;
+import com.isacc.event.trace.Tracer;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.data.redis.core.StringRedisTemplate;
-import org.springframework.scheduling.annotation.EnableScheduling;
-import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
 /**
  * <p>
  * 创建一个定时器模拟发布消息
  * </p>
+ * <p>
+ * 每个频道注册到时间轮调度器上，运行时可以随时增删频道
+ * </p>
  *
  * @author isacc 2019/09/04 17:37
  * @since 1.0
  */
-@EnableScheduling
 @Component
 public class MessageSender {
 
     private final StringRedisTemplate stringRedisTemplate;
+    /**
+     * 开启了outbox时不为空
+     */
+    private final RedisOutbox redisOutbox;
+    private final PeriodicPublishScheduler periodicPublishScheduler;
+    private final Map<String, PeriodicPublishScheduler.Registration> registrations = new ConcurrentHashMap<>();
 
-    public MessageSender(StringRedisTemplate stringRedisTemplate) {
+    public MessageSender(StringRedisTemplate stringRedisTemplate,
+                         ObjectProvider<RedisOutbox> redisOutbox,
+                         PeriodicPublishScheduler periodicPublishScheduler) {
         this.stringRedisTemplate = stringRedisTemplate;
+        this.redisOutbox = redisOutbox.getIfAvailable();
+        this.periodicPublishScheduler = periodicPublishScheduler;
+    }
+
+    @PostConstruct
+    public void init() {
+        // 间隔5s向cat频道发布消息
+        register("cat", 5000, () -> "i am cat");
+        // 间隔10s向fish频道发布消息
+        register("fish", 10000, () -> "i am fish");
+    }
+
+    /**
+     * 注册周期发布，同一个频道重复注册会替换之前的
+     *
+     * @param channel         频道
+     * @param periodMillis    间隔(毫秒)
+     * @param messageSupplier 每次发布的消息
+     */
+    public void register(String channel, long periodMillis, Supplier<String> messageSupplier) {
+        PeriodicPublishScheduler.Registration registration = periodicPublishScheduler.schedule(channel,
+                periodMillis, TimeUnit.MILLISECONDS, () -> send(channel, messageSupplier.get()));
+        PeriodicPublishScheduler.Registration previous = registrations.put(channel, registration);
+        if (previous != null) {
+            previous.cancel();
+        }
     }
 
     /**
-     * 间隔2s 通过StringRedisTemplate对象向redis消息队列cat频道发布消息
+     * 取消周期发布
+     *
+     * @param channel 频道
+     * @return 是否注册过
      */
-    @Scheduled(fixedRate = 5000)
-    public void sendCatMessage() {
-        stringRedisTemplate.convertAndSend("cat", "i am cat");
+    public boolean unregister(String channel) {
+        PeriodicPublishScheduler.Registration registration = registrations.remove(channel);
+        if (registration == null) {
+            return false;
+        }
+        registration.cancel();
+        return true;
     }
 
     /**
-     * 间隔1s 通过StringRedisTemplate对象向redis消息队列fish频道发布消息
+     * 开启了outbox先写本地日志，不阻塞在redis上，否则直接发布；被采样的消息带上追踪上下文
      */
-    @Scheduled(fixedRate = 10000)
-    public void sendFishMessage() {
-        stringRedisTemplate.convertAndSend("fish", "i am fish");
+    private void send(String channel, String message) {
+        TraceContext traceContext = Tracer.getInstance().begin();
+        long start = Tracer.nanoTime();
+        String payload = TraceEnvelope.wrap(traceContext, message);
+        try {
+            if (redisOutbox != null) {
+                redisOutbox.publish(channel, payload);
+            } else {
+                stringRedisTemplate.convertAndSend(channel, payload);
+            }
+        } finally {
+            Tracer.getInstance().recordRoot(traceContext, "redis.publish", start);
+        }
     }
 
 }
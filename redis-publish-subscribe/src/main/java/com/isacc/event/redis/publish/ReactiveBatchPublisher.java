@@ -0,0 +1,76 @@
+package com.isacc.event.redis.publish;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+
+import com.isacc.event.trace.TraceContext;
+import com.isacc.event.trace.TraceEnvelope;
+import com.isacc.event.trace.Tracer;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.function.Tuples;
+
+/**
+ * <p>
+ * 响应式批量发布
+ * </p>
+ * <p>
+ * 不阻塞调用线程，所有publish命令走lettuce同一个连接，在途命令由lettuce自动pipeline，
+ * 一个event-loop线程就能处理很多频道的发布
+ * </p>
+ * <p>
+ * 和MessageSender一样，每条消息在源头单独采样，被采样的带上追踪上下文，发布完成时记录一个span
+ * </p>
+ *
+ * @author isacc 2019/09/06 11:02
+ * @since 1.0
+ */
+public class ReactiveBatchPublisher {
+
+    private final ReactiveStringRedisTemplate reactiveStringRedisTemplate;
+    /**
+     * 同时在途的publish命令数
+     */
+    private final int concurrency;
+
+    public ReactiveBatchPublisher(ReactiveStringRedisTemplate reactiveStringRedisTemplate, int concurrency) {
+        this.reactiveStringRedisTemplate = reactiveStringRedisTemplate;
+        this.concurrency = concurrency;
+    }
+
+    /**
+     * 向一个频道批量发布消息
+     *
+     * @param channel  频道
+     * @param messages 消息
+     * @return 所有消息的接收者数量之和
+     */
+    public Mono<Long> publishBatch(String channel, Collection<String> messages) {
+        return publishBatch(Collections.singletonMap(channel, messages));
+    }
+
+    /**
+     * 向多个频道批量发布消息
+     *
+     * @param channelMessages 频道 -> 消息
+     * @return 所有消息的接收者数量之和
+     */
+    public Mono<Long> publishBatch(Map<String, ? extends Collection<String>> channelMessages) {
+        return Flux.fromIterable(channelMessages.entrySet())
+                .concatMap(entry -> Flux.fromIterable(entry.getValue())
+                        .map(message -> Tuples.of(entry.getKey(), message)))
+                .flatMap(tuple -> publish(tuple.getT1(), tuple.getT2()), concurrency)
+                .reduce(0L, Long::sum);
+    }
+
+    private Mono<Long> publish(String channel, String message) {
+        return Mono.defer(() -> {
+            TraceContext traceContext = Tracer.getInstance().begin();
+            long start = Tracer.nanoTime();
+            return reactiveStringRedisTemplate.convertAndSend(channel, TraceEnvelope.wrap(traceContext, message))
+                    .doFinally(signal -> Tracer.getInstance().recordRoot(traceContext, "redis.reactive.publish", start));
+        });
+    }
+}
@@ -0,0 +1,25 @@
+package com.isacc.event.redis.reactive;
+
+/**
+ * <p>
+ * 响应式订阅时，消费者跟不上生产速度的溢出策略
+ * </p>
+ *
+ * @author isacc 2019/09/06 10:12
+ * @since 1.0
+ */
+public enum OverflowStrategy {
+
+    /**
+     * 有界缓冲，缓冲区满了直接报错，终止该订阅（说明消费者太慢，需要扩容）
+     */
+    BUFFER,
+    /**
+     * 有界缓冲，缓冲区满了丢弃最老的消息
+     */
+    DROP_OLDEST,
+    /**
+     * 只保留最新的一条消息，消费者请求时拿到的总是最新值
+     */
+    LATEST
+}
@@ -0,0 +1,215 @@
+package com.isacc.event.redis.reactive;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.isacc.event.trace.TraceContext;
+import com.isacc.event.trace.TraceEnvelope;
+import com.isacc.event.trace.Tracer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.data.redis.connection.ReactiveSubscription.ChannelMessage;
+import org.springframework.data.redis.connection.ReactiveSubscription.Message;
+import org.springframework.data.redis.connection.ReactiveSubscription.PatternMessage;
+import org.springframework.data.redis.listener.PatternTopic;
+import org.springframework.data.redis.listener.ReactiveRedisMessageListenerContainer;
+import reactor.core.publisher.BufferOverflowStrategy;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * <p>
+ * 响应式订阅者，把每个频道暴露成一个带背压的Flux
+ * </p>
+ * <p>
+ * RedisMessageListenerContainer是推模式，消费者慢了消息只会在线程池里无限堆积；
+ * 这里基于ReactiveRedisMessageListenerContainer，所有频道共用lettuce的一个连接(一个event-loop线程)，
+ * 上游按溢出策略做有界缓冲，下游按limitRate分批请求，消费切到单独的线程，不占用event-loop
+ * </p>
+ * <p>
+ * BUFFER策略缓冲区满了会报错，这里报错后按退避时间重新订阅，不会让频道从此收不到消息
+ * </p>
+ * <p>
+ * subscribe/receive去掉追踪包装并记录接收的span；receiveWrapped保留包装，交给FilteringMessageListener处理
+ * </p>
+ *
+ * @author isacc 2019/09/06 10:20
+ * @since 1.0
+ */
+@Slf4j
+public class ReactiveChannelSubscriber implements DisposableBean {
+
+    private final ReactiveRedisMessageListenerContainer container;
+    private final ReactiveSubscribeProperties properties;
+    /**
+     * 和simpleEventAsyncTaskExecutor一样，一个线程消费即可
+     */
+    private final Scheduler scheduler = Schedulers.newSingle("ReactiveListener", true);
+
+    public ReactiveChannelSubscriber(ReactiveRedisMessageListenerContainer container,
+                                     ReactiveSubscribeProperties properties) {
+        this.container = container;
+        this.properties = properties;
+    }
+
+    /**
+     * 订阅频道(支持通配符)，只关心消息体，溢出策略取该频道的配置
+     *
+     * @param patterns 频道，如cat、fish、c*
+     * @return Flux<String>
+     */
+    public Flux<String> subscribe(String... patterns) {
+        return receive(patterns).map(Message::getMessage);
+    }
+
+    /**
+     * 订阅频道(支持通配符)，只关心消息体
+     *
+     * @param overflow 本次订阅的溢出策略
+     * @param patterns 频道，如cat、fish、c*
+     * @return Flux<String>
+     */
+    public Flux<String> subscribe(OverflowStrategy overflow, String... patterns) {
+        return receive(overflow, patterns).map(Message::getMessage);
+    }
+
+    /**
+     * 订阅频道(支持通配符)，带上消息来自哪个频道，溢出策略取该频道的配置
+     *
+     * @param patterns 频道，如cat、fish、c*
+     * @return Flux<Message>
+     */
+    public Flux<Message<String, String>> receive(String... patterns) {
+        return receive(properties.overflowOf(patterns), patterns);
+    }
+
+    /**
+     * 订阅频道(支持通配符)，带上消息来自哪个频道
+     *
+     * @param overflow 本次订阅的溢出策略
+     * @param patterns 频道，如cat、fish、c*
+     * @return Flux<Message>
+     */
+    public Flux<Message<String, String>> receive(OverflowStrategy overflow, String... patterns) {
+        return receive(overflow, true, patterns);
+    }
+
+    /**
+     * 订阅频道(支持通配符)，消息体保持发布时的样子，被采样的消息不去掉追踪包装，溢出策略取该频道的配置
+     * <p>
+     * 用来交给FilteringMessageListener，由它去掉包装、把追踪上下文放到处理线程上并记录处理的span
+     * </p>
+     *
+     * @param patterns 频道，如cat、fish、c*
+     * @return Flux<Message>
+     */
+    public Flux<Message<String, String>> receiveWrapped(String... patterns) {
+        return receive(properties.overflowOf(patterns), false, patterns);
+    }
+
+    private Flux<Message<String, String>> receive(OverflowStrategy overflow, boolean unwrap, String... patterns) {
+        PatternTopic[] topics = Arrays.stream(patterns).map(PatternTopic::new).toArray(PatternTopic[]::new);
+        String desc = Arrays.toString(patterns);
+        return Flux.defer(() -> {
+            // 连续失败的次数，每个订阅单独计数，收到消息后清零
+            AtomicLong retries = new AtomicLong();
+            Flux<Message<String, String>> flux = container.receive(topics).map(message -> unwrap ? stamp(message) : message);
+            Flux<Message<String, String>> delivered = applyOverflow(flux, overflow, desc)
+                    // 每次只向上游请求limitRate条，消费了75%再补
+                    .publishOn(scheduler, properties.getLimitRate());
+            return (unwrap ? delivered.map(this::unwrap) : delivered)
+                    .doOnNext(message -> retries.set(0L))
+                    .retryWhen(errors -> errors.concatMap(e -> {
+                        Duration backoff = backoff(properties.getRetryBackoff(), properties.getMaxRetryBackoff(),
+                                retries.getAndIncrement());
+                        log.error("channel {} subscription failed, resubscribe after {}ms", desc, backoff.toMillis(), e);
+                        return Mono.delay(backoff);
+                    }));
+        });
+    }
+
+    /**
+     * 指数退避，第n次重试等待base * 2^n，不超过max
+     *
+     * @param base    第一次重试的等待时间
+     * @param max     最大等待时间
+     * @param retries 之前连续失败的次数
+     * @return 等待时间
+     */
+    static Duration backoff(Duration base, Duration max, long retries) {
+        return Duration.ofMillis(Math.min(base.toMillis() << Math.min(retries, 20L), max.toMillis()));
+    }
+
+    /**
+     * 被采样的消息记下从连接上收到的时间，没被采样的原样返回，不分配对象
+     */
+    private Message<String, String> stamp(Message<String, String> message) {
+        return TraceEnvelope.isWrapped(message.getMessage()) ? new ReceivedMessage(message, Tracer.nanoTime()) : message;
+    }
+
+    /**
+     * 被采样的消息去掉追踪包装，记录一个接收的span，耗时是从连接上收到到交给消费者线程，即在缓冲里等待的时间
+     */
+    private Message<String, String> unwrap(Message<String, String> stamped) {
+        if (!(stamped instanceof ReceivedMessage)) {
+            return stamped;
+        }
+        Message<String, String> message = ((ReceivedMessage) stamped).message;
+        TraceContext traceContext = TraceEnvelope.context(message.getMessage());
+        Tracer.getInstance().recordChild(traceContext, "redis.reactive.receive", ((ReceivedMessage) stamped).receivedNanos);
+        String body = TraceEnvelope.body(message.getMessage());
+        if (message instanceof PatternMessage) {
+            return new PatternMessage<>(((PatternMessage<?, ?, ?>) message).getPattern(), message.getChannel(), body);
+        }
+        return new ChannelMessage<>(message.getChannel(), body);
+    }
+
+    private <T> Flux<T> applyOverflow(Flux<T> flux, OverflowStrategy overflow, String desc) {
+        int bufferSize = properties.getBufferSize();
+        switch (overflow) {
+            case DROP_OLDEST:
+                return flux.onBackpressureBuffer(bufferSize,
+                        dropped -> log.warn("channel {} buffer is full, drop oldest message", desc),
+                        BufferOverflowStrategy.DROP_OLDEST);
+            case LATEST:
+                return flux.onBackpressureLatest();
+            case BUFFER:
+            default:
+                return flux.onBackpressureBuffer(bufferSize,
+                        dropped -> log.error("channel {} buffer overflow, consumer is too slow", desc),
+                        BufferOverflowStrategy.ERROR);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        scheduler.dispose();
+    }
+
+    /**
+     * 被采样的消息，带上从连接上收到的时间
+     */
+    private static final class ReceivedMessage implements Message<String, String> {
+
+        private final Message<String, String> message;
+        private final long receivedNanos;
+
+        private ReceivedMessage(Message<String, String> message, long receivedNanos) {
+            this.message = message;
+            this.receivedNanos = receivedNanos;
+        }
+
+        @Override
+        public String getChannel() {
+            return message.getChannel();
+        }
+
+        @Override
+        public String getMessage() {
+            return message.getMessage();
+        }
+    }
+}
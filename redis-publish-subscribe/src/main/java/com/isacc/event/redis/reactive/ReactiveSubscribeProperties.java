@@ -0,0 +1,72 @@
+package com.isacc.event.redis.reactive;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * <p>
+ * 响应式订阅配置
+ * </p>
+ *
+ * @author isacc 2019/09/06 10:15
+ * @since 1.0
+ */
+@Data
+@ConfigurationProperties(prefix = ReactiveSubscribeProperties.PREFIX)
+public class ReactiveSubscribeProperties {
+
+    public static final String PREFIX = "isacc.redis.reactive";
+
+    /**
+     * 是否开启响应式订阅，默认关闭，走RedisMessageListenerContainer
+     */
+    private boolean enabled = false;
+    /**
+     * 默认的溢出策略
+     */
+    private OverflowStrategy overflow = OverflowStrategy.BUFFER;
+    /**
+     * 按频道单独配置的溢出策略，没配置的用overflow
+     */
+    private Map<String, OverflowStrategy> channelOverflow = new HashMap<>();
+    /**
+     * BUFFER/DROP_OLDEST时缓冲区大小
+     */
+    private int bufferSize = 1024;
+    /**
+     * 消费者每批向上游请求的消息数，类似limitRate
+     */
+    private int limitRate = 64;
+    /**
+     * 批量发布时同时在途的publish命令数，lettuce在同一个连接上会自动pipeline
+     */
+    private int publishConcurrency = 256;
+    /**
+     * 订阅出错(比如BUFFER溢出)后重新订阅的初始等待时间，之后指数退避
+     */
+    private Duration retryBackoff = Duration.ofSeconds(1);
+    /**
+     * 重新订阅的最大等待时间
+     */
+    private Duration maxRetryBackoff = Duration.ofSeconds(30);
+
+    /**
+     * 频道的溢出策略，多个频道一起订阅时取第一个配置过的
+     *
+     * @param patterns 频道
+     * @return OverflowStrategy
+     */
+    public OverflowStrategy overflowOf(String... patterns) {
+        for (String pattern : patterns) {
+            OverflowStrategy strategy = channelOverflow.get(pattern);
+            if (strategy != null) {
+                return strategy;
+            }
+        }
+        return overflow;
+    }
+}
@@ -0,0 +1,436 @@
+package com.isacc.event.redis.schedule;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.DoubleSupplier;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * <p>
+ * 基于时间轮的周期发布调度器
+ * </p>
+ * <p>
+ * &#64;Scheduled都跑在spring默认的单个调度线程上，一个频道发布慢了其他频道都得等；
+ * 这里一个tick线程只负责推进时间轮，到期的任务按批交给worker线程池执行，
+ * 注册/取消走无锁队列、在tick线程上生效，上万个注册的调度开销也是O(到期数)。
+ * 首次触发在[0, period)内随机，之后每次再加上±jitter，避免大量频道同时触发
+ * </p>
+ * <p>
+ * 同一个注册上一次还没执行完时这次触发会被跳过，不会堆积
+ * </p>
+ *
+ * @author isacc 2019/09/16 10:30
+ * @since 1.0
+ */
+@Slf4j
+public class PeriodicPublishScheduler {
+
+    private final Executor executor;
+    private final long tickNanos;
+    private final Bucket[] wheel;
+    private final int mask;
+    private final double jitterRatio;
+    private final int batchSize;
+    /**
+     * 首次触发在周期内的位置，[0, 1)
+     */
+    private final DoubleSupplier initialPhase;
+    private final Queue<Registration> pendingAdds = new ConcurrentLinkedQueue<>();
+    private final Queue<Registration> pendingCancels = new ConcurrentLinkedQueue<>();
+    private final Thread tickThread;
+    private volatile boolean running;
+    private long startNanos;
+    /**
+     * 以下只有tick线程会修改
+     */
+    private long tick;
+    private final List<Registration> due = new ArrayList<>();
+    private volatile long ticks;
+    private volatile long totalTickNanos;
+    private volatile long maxTickNanos;
+    private volatile long fired;
+    private volatile long skipped;
+    private volatile long rejected;
+    private volatile long transferred;
+    private volatile long transferNanos;
+    private volatile long cancelled;
+    private volatile long cancelNanos;
+
+    /**
+     * @param executor    执行发布的线程池
+     * @param tickMillis  时间轮每格的时长，即调度精度
+     * @param wheelSize   时间轮格数，会向上取整到2的幂
+     * @param jitterRatio 每次触发的随机抖动占周期的比例
+     * @param batchSize   每个worker任务最多执行多少个到期的发布
+     */
+    public PeriodicPublishScheduler(Executor executor, long tickMillis, int wheelSize, double jitterRatio, int batchSize) {
+        this(executor, tickMillis, wheelSize, jitterRatio, batchSize, () -> ThreadLocalRandom.current().nextDouble());
+    }
+
+    /**
+     * 测试用，可以指定首次触发的位置
+     */
+    PeriodicPublishScheduler(Executor executor, long tickMillis, int wheelSize, double jitterRatio, int batchSize,
+                             DoubleSupplier initialPhase) {
+        if (tickMillis <= 0 || wheelSize <= 0 || batchSize <= 0 || jitterRatio < 0 || jitterRatio >= 1) {
+            throw new IllegalArgumentException("invalid scheduler config");
+        }
+        this.executor = executor;
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+        int size = Integer.highestOneBit(wheelSize - 1) << 1;
+        this.wheel = new Bucket[Math.max(size, 1)];
+        for (int i = 0; i < wheel.length; i++) {
+            wheel[i] = new Bucket();
+        }
+        this.mask = wheel.length - 1;
+        this.jitterRatio = jitterRatio;
+        this.batchSize = batchSize;
+        this.initialPhase = initialPhase;
+        this.tickThread = new ThreadFactoryBuilder()
+                .setNameFormat("PublishScheduler")
+                .setDaemon(true)
+                .build()
+                .newThread(this::tickLoop);
+    }
+
+    public void start() {
+        startNanos = System.nanoTime();
+        running = true;
+        tickThread.start();
+    }
+
+    public void stop() {
+        running = false;
+        tickThread.interrupt();
+    }
+
+    /**
+     * 注册一个周期任务，可以在运行时随时注册
+     *
+     * @param key    任务标识，用于日志
+     * @param period 周期，不能小于tick
+     * @param unit   周期的单位
+     * @param task   任务
+     * @return Registration，用于取消
+     */
+    public Registration schedule(String key, long period, TimeUnit unit, Runnable task) {
+        long periodNanos = unit.toNanos(period);
+        if (periodNanos < tickNanos) {
+            throw new IllegalArgumentException("period must not be less than tick: " + key);
+        }
+        Registration registration = new Registration(key, periodNanos, task);
+        pendingAdds.add(registration);
+        return registration;
+    }
+
+    public long getTicks() {
+        return ticks;
+    }
+
+    public long getTotalTickNanos() {
+        return totalTickNanos;
+    }
+
+    public long getMaxTickNanos() {
+        return maxTickNanos;
+    }
+
+    public long getFired() {
+        return fired;
+    }
+
+    public long getSkipped() {
+        return skipped;
+    }
+
+    public long getRejected() {
+        return rejected;
+    }
+
+    /**
+     * tick线程已经放进时间轮的注册数，注册的开销=schedule入队+这里的transfer
+     */
+    public long getTransferred() {
+        return transferred;
+    }
+
+    public long getTransferNanos() {
+        return transferNanos;
+    }
+
+    /**
+     * tick线程已经处理的取消数
+     */
+    public long getCancelled() {
+        return cancelled;
+    }
+
+    public long getCancelNanos() {
+        return cancelNanos;
+    }
+
+    private void tickLoop() {
+        while (running) {
+            long now = waitForNextTick();
+            if (now < 0) {
+                break;
+            }
+            advance(now);
+        }
+    }
+
+    /**
+     * 处理当前格并前进一格，只在tick线程上调用；测试里不start，直接调用来驱动时间轮
+     *
+     * @param now 当前时间(相对startNanos)
+     */
+    void advance(long now) {
+        long begin = System.nanoTime();
+        processCancels();
+        transferAdds(now);
+        wheel[(int) (tick & mask)].expire(due);
+        for (Registration registration : due) {
+            registration.deadline = nextDeadline(registration, now);
+            place(registration, tick + 1);
+        }
+        dispatch(due);
+        due.clear();
+        tick++;
+        long cost = System.nanoTime() - begin;
+        ticks = tick;
+        totalTickNanos += cost;
+        if (cost > maxTickNanos) {
+            maxTickNanos = cost;
+        }
+    }
+
+    /**
+     * 等到下一格
+     *
+     * @return 当前时间(相对startNanos)，被中断返回-1
+     */
+    private long waitForNextTick() {
+        long deadline = tickNanos * (tick + 1);
+        while (true) {
+            long now = System.nanoTime() - startNanos;
+            long sleepNanos = deadline - now;
+            if (sleepNanos <= 0) {
+                return now;
+            }
+            try {
+                TimeUnit.NANOSECONDS.sleep(sleepNanos);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return -1;
+            }
+        }
+    }
+
+    private void processCancels() {
+        Registration registration = pendingCancels.poll();
+        if (registration == null) {
+            return;
+        }
+        long begin = System.nanoTime();
+        long count = 0;
+        for (; registration != null; registration = pendingCancels.poll()) {
+            if (registration.bucket != null) {
+                registration.bucket.remove(registration);
+            }
+            count++;
+        }
+        cancelled += count;
+        cancelNanos += System.nanoTime() - begin;
+    }
+
+    private void transferAdds(long now) {
+        Registration registration = pendingAdds.poll();
+        if (registration == null) {
+            return;
+        }
+        long begin = System.nanoTime();
+        long count = 0;
+        for (; registration != null; registration = pendingAdds.poll()) {
+            count++;
+            if (registration.cancelled) {
+                continue;
+            }
+            // 首次触发在一个周期内随机，打散同时注册的任务
+            registration.deadline = now + (long) (initialPhase.getAsDouble() * registration.periodNanos);
+            place(registration, tick);
+        }
+        transferred += count;
+        transferNanos += System.nanoTime() - begin;
+    }
+
+    private long nextDeadline(Registration registration, long now) {
+        long jitter = 0L;
+        if (jitterRatio > 0) {
+            long bound = (long) (registration.periodNanos * jitterRatio);
+            jitter = bound > 0 ? ThreadLocalRandom.current().nextLong(-bound, bound + 1) : 0L;
+        }
+        long next = registration.deadline + registration.periodNanos + jitter;
+        // 落后太多(比如长时间GC)不补发，直接从现在开始算
+        return next < now ? now + registration.periodNanos : next;
+    }
+
+    /**
+     * 放进时间轮
+     *
+     * @param minTick 还没有处理过的最早一格，当前格处理前是tick，处理后是tick + 1
+     */
+    private void place(Registration registration, long minTick) {
+        long calculated = registration.deadline / tickNanos;
+        long target = Math.max(calculated, minTick);
+        registration.remainingRounds = (target - minTick) / wheel.length;
+        wheel[(int) (target & mask)].add(registration);
+    }
+
+    private void dispatch(List<Registration> due) {
+        List<Registration> batch = new ArrayList<>(Math.min(batchSize, due.size()));
+        for (Registration registration : due) {
+            if (!registration.executing.compareAndSet(false, true)) {
+                skipped++;
+                continue;
+            }
+            batch.add(registration);
+            if (batch.size() == batchSize) {
+                submit(batch);
+                batch = new ArrayList<>(batchSize);
+            }
+        }
+        if (!batch.isEmpty()) {
+            submit(batch);
+        }
+    }
+
+    private void submit(List<Registration> batch) {
+        try {
+            executor.execute(() -> {
+                for (Registration registration : batch) {
+                    try {
+                        registration.task.run();
+                    } catch (Exception e) {
+                        log.error("periodic publish {} error", registration.key, e);
+                    } finally {
+                        registration.executing.set(false);
+                    }
+                }
+            });
+            fired += batch.size();
+        } catch (RejectedExecutionException e) {
+            rejected += batch.size();
+            batch.forEach(registration -> registration.executing.set(false));
+            log.warn("publish worker is busy, {} publishes skipped", batch.size());
+        }
+    }
+
+    /**
+     * 一个周期任务的注册
+     */
+    public final class Registration {
+
+        private final String key;
+        private final long periodNanos;
+        private final Runnable task;
+        private final AtomicBoolean executing = new AtomicBoolean(false);
+        private volatile boolean cancelled;
+        /**
+         * 以下只有tick线程访问
+         */
+        private long deadline;
+        private long remainingRounds;
+        private Bucket bucket;
+        private Registration prev;
+        private Registration next;
+
+        private Registration(String key, long periodNanos, Runnable task) {
+            this.key = key;
+            this.periodNanos = periodNanos;
+            this.task = task;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        /**
+         * 取消，下一个tick生效，正在执行的不受影响
+         */
+        public void cancel() {
+            if (!cancelled) {
+                cancelled = true;
+                pendingCancels.add(this);
+            }
+        }
+    }
+
+    /**
+     * 时间轮的一格，双向链表，取消时O(1)摘除
+     */
+    private static final class Bucket {
+
+        private Registration head;
+        private Registration tail;
+
+        private void add(Registration registration) {
+            registration.bucket = this;
+            registration.prev = tail;
+            registration.next = null;
+            if (tail == null) {
+                head = registration;
+            } else {
+                tail.next = registration;
+            }
+            tail = registration;
+        }
+
+        private void remove(Registration registration) {
+            if (registration.prev == null) {
+                head = registration.next;
+            } else {
+                registration.prev.next = registration.next;
+            }
+            if (registration.next == null) {
+                tail = registration.prev;
+            } else {
+                registration.next.prev = registration.prev;
+            }
+            registration.bucket = null;
+            registration.prev = null;
+            registration.next = null;
+        }
+
+        /**
+         * 摘出这一格里本轮到期的任务
+         */
+        private void expire(List<Registration> due) {
+            Registration registration = head;
+            while (registration != null) {
+                Registration next = registration.next;
+                if (registration.cancelled) {
+                    remove(registration);
+                } else if (registration.remainingRounds <= 0) {
+                    remove(registration);
+                    due.add(registration);
+                } else {
+                    registration.remainingRounds--;
+                }
+                registration = next;
+            }
+        }
+    }
+}
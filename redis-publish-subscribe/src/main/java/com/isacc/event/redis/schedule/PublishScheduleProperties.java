@@ -0,0 +1,46 @@
+package com.isacc.event.redis.schedule;
+
+import java.time.Duration;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * <p>
+ * 周期发布调度配置
+ * </p>
+ *
+ * @author isacc 2019/09/16 14:20
+ * @since 1.0
+ */
+@Data
+@ConfigurationProperties(prefix = PublishScheduleProperties.PREFIX)
+public class PublishScheduleProperties {
+
+    public static final String PREFIX = "isacc.redis.schedule";
+
+    /**
+     * 时间轮每格的时长，即调度精度
+     */
+    private Duration tick = Duration.ofMillis(10);
+    /**
+     * 时间轮格数，tick * wheelSize以内的周期不需要多轮
+     */
+    private int wheelSize = 512;
+    /**
+     * 每次触发的随机抖动占周期的比例
+     */
+    private double jitterRatio = 0.05;
+    /**
+     * 每个worker任务最多执行多少个到期的发布
+     */
+    private int batchSize = 64;
+    /**
+     * worker线程数
+     */
+    private int workerPoolSize = 4;
+    /**
+     * worker线程池队列大小
+     */
+    private int workerQueueCapacity = 1024;
+}
@@ -0,0 +1,81 @@
+package com.isacc.event.redis.config;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import com.isacc.event.redis.filter.FilteringMessageListener;
+import com.isacc.event.redis.filter.SubscriptionFilter;
+import com.isacc.event.redis.reactive.ReactiveChannelSubscriber;
+import com.isacc.event.trace.SpanRecord;
+import com.isacc.event.trace.TraceContext;
+import com.isacc.event.trace.TraceEnvelope;
+import com.isacc.event.trace.Tracer;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.springframework.data.redis.connection.ReactiveSubscription.ChannelMessage;
+import org.springframework.data.redis.connection.ReactiveSubscription.Message;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+
+/**
+ * <p>
+ * 响应式订阅分发到监听器：一个监听器抛异常不会取消整个订阅，追踪上下文能传到监听器
+ * </p>
+ *
+ * @author isacc 2019/09/06 16:10
+ * @since 1.0
+ */
+public class ReactiveRedisConfigurationTest {
+
+    @Test
+    public void listenerErrorDoesNotCancelSubscription() {
+        ReactiveChannelSubscriber subscriber = Mockito.mock(ReactiveChannelSubscriber.class);
+        Flux<Message<String, String>> messages = Flux.just(
+                new ChannelMessage<>("cat", "bad"), new ChannelMessage<>("cat", "good"));
+        Mockito.when(subscriber.receiveWrapped("cat")).thenReturn(messages);
+        List<String> received = new ArrayList<>();
+        Disposable disposable = ReactiveRedisConfiguration.dispatchTo(subscriber, (message, pattern) -> {
+            String body = new String(message.getBody(), StandardCharsets.UTF_8);
+            if ("bad".equals(body)) {
+                throw new IllegalStateException("listener error");
+            }
+            received.add(body + "@" + new String(pattern, StandardCharsets.UTF_8));
+        }, "cat");
+        Assert.assertEquals(1, received.size());
+        Assert.assertEquals("good@cat", received.get(0));
+        disposable.dispose();
+    }
+
+    @Test
+    public void traceContextReachesListener() {
+        double sampleRate = Tracer.getInstance().getSampleRate();
+        Tracer.getInstance().setSampleRate(1.0);
+        try {
+            TraceContext published = Tracer.getInstance().begin();
+            ReactiveChannelSubscriber subscriber = Mockito.mock(ReactiveChannelSubscriber.class);
+            Mockito.when(subscriber.receiveWrapped("cat"))
+                    .thenReturn(Flux.just(new ChannelMessage<>("cat", TraceEnvelope.wrap(published, "i am cat"))));
+            List<String> bodies = new ArrayList<>();
+            List<TraceContext> contexts = new ArrayList<>();
+            FilteringMessageListener filteringMessageListener = new FilteringMessageListener()
+                    .register(SubscriptionFilter.builder().channel("cat").build(), (message, pattern) -> {
+                        bodies.add(new String(message.getBody(), StandardCharsets.UTF_8));
+                        contexts.add(Tracer.current());
+                    });
+            ReactiveRedisConfiguration.dispatchTo(subscriber, filteringMessageListener, "cat").dispose();
+
+            Assert.assertEquals(Collections.singletonList("i am cat"), bodies);
+            Assert.assertEquals(published.getTraceId(), contexts.get(0).getTraceId());
+            List<String> spans = Tracer.getInstance().snapshot(0L, published.getTraceId()).stream()
+                    .map(SpanRecord::getName)
+                    .collect(Collectors.toList());
+            Assert.assertEquals(Collections.singletonList("redis.handle"), spans);
+        } finally {
+            Tracer.getInstance().setSampleRate(sampleRate);
+        }
+    }
+}
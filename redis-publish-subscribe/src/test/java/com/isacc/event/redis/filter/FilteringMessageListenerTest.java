@@ -0,0 +1,43 @@
+package com.isacc.event.redis.filter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.data.redis.connection.DefaultMessage;
+
+/**
+ * <p>
+ * 按过滤条件分发：一个监听器抛异常，其他匹配的监听器照样收到消息
+ * </p>
+ *
+ * @author isacc 2019/09/10 09:30
+ * @since 1.0
+ */
+public class FilteringMessageListenerTest {
+
+    @Test
+    public void listenerErrorDoesNotStarveOthers() {
+        List<String> received = new ArrayList<>();
+        FilteringMessageListener filteringMessageListener = new FilteringMessageListener()
+                .register(SubscriptionFilter.builder().channel("cat").build(), (message, pattern) -> {
+                    throw new IllegalStateException("bad listener");
+                })
+                .register(SubscriptionFilter.builder().channel("cat").build(),
+                        (message, pattern) -> received.add("first " + new String(message.getBody(), StandardCharsets.UTF_8)))
+                .register(SubscriptionFilter.builder().channel("cat").build(),
+                        (message, pattern) -> received.add("second " + new String(message.getBody(), StandardCharsets.UTF_8)));
+
+        filteringMessageListener.onMessage(new DefaultMessage(bytes("cat"), bytes("i am cat")), bytes("cat"));
+
+        received.sort(String::compareTo);
+        Assert.assertEquals(Arrays.asList("first i am cat", "second i am cat"), received);
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,61 @@
+package com.isacc.event.redis.filter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * <p>
+ * 消息体字段抽取
+ * </p>
+ *
+ * @author isacc 2019/09/09 16:35
+ * @since 1.0
+ */
+public class PayloadFieldExtractorTest {
+
+    @Test
+    public void extractTopLevelScalars() {
+        Map<String, String> values = extract("{\"a\":\"x\",\"b\":2,\"c\":true,\"d\":null,\"e\":{\"a\":\"nested\"},\"f\":[1]}",
+                "a", "b", "c", "d", "e", "f");
+        Map<String, String> expected = new HashMap<>();
+        expected.put("a", "x");
+        expected.put("b", "2");
+        expected.put("c", "true");
+        Assert.assertEquals(expected, values);
+    }
+
+    @Test
+    public void stopWhenAllFieldsFound() {
+        // 拿齐了就停止，后面重复的字段和非法的json都不会读到
+        Assert.assertEquals(Collections.singletonMap("a", "1"), extract("{\"a\":\"1\",\"a\":\"2\"}", "a"));
+        Assert.assertEquals(Collections.singletonMap("a", "1"), extract("{\"a\":\"1\", broken", "a"));
+    }
+
+    @Test
+    public void nestedFieldIsNotTopLevel() {
+        Assert.assertEquals(Collections.singletonMap("a", "top"), extract("{\"x\":{\"a\":\"nested\"},\"a\":\"top\"}", "a"));
+    }
+
+    @Test
+    public void nonObjectPayload() {
+        Assert.assertTrue(extract("i am cat", "a").isEmpty());
+        Assert.assertTrue(extract("  [{\"a\":1}]", "a").isEmpty());
+        Assert.assertTrue(extract("\"a\"", "a").isEmpty());
+        Assert.assertTrue(extract("", "a").isEmpty());
+        Assert.assertTrue(extract("{\"a\":", "a").isEmpty());
+    }
+
+    @Test
+    public void noFieldsNeeded() {
+        Assert.assertTrue(extract("{\"a\":1}").isEmpty());
+    }
+
+    private static Map<String, String> extract(String body, String... fields) {
+        Map<String, String> target = new HashMap<>(8);
+        PayloadFieldExtractor.extract(body.getBytes(StandardCharsets.UTF_8), new HashSet<>(Arrays.asList(fields)), target);
+        return target;
+    }
+}
@@ -0,0 +1,100 @@
+package com.isacc.event.redis.filter;
+
+import java.util.*;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * <p>
+ * 订阅索引：命中、未命中、剩余条件、取消注册，以及消息体字段按需解析
+ * </p>
+ *
+ * @author isacc 2019/09/09 16:20
+ * @since 1.0
+ */
+public class SubscriptionIndexTest {
+
+    private final SubscriptionIndex<String> index = new SubscriptionIndex<>();
+    private final List<Set<String>> loaded = new ArrayList<>();
+
+    @Test
+    public void headerIndexHit() {
+        index.register(SubscriptionFilter.builder().channel("cat").build(), "cat");
+        index.register(SubscriptionFilter.builder().channel("fish").build(), "fish");
+        Assert.assertEquals(Collections.singletonList("cat"), match("cat", null));
+        Assert.assertEquals(Collections.singletonList("fish"), match("fish", null));
+    }
+
+    @Test
+    public void headerIndexMissSkipsPayload() {
+        index.register(SubscriptionFilter.builder().channel("cat").eq("color", "black").build(), "blackCat");
+        Assert.assertEquals(Collections.emptyList(), match("fish", "{\"color\":\"black\"}"));
+        // 候选为空，消息体一个字段都不用解析
+        Assert.assertTrue(loaded.isEmpty());
+    }
+
+    @Test
+    public void channelOnlySubscribersNeverParsePayload() {
+        index.register(SubscriptionFilter.builder().channel("cat").build(), "cat");
+        Assert.assertEquals(Collections.singletonList("cat"), match("cat", "{\"color\":\"black\"}"));
+        Assert.assertTrue(loaded.isEmpty());
+    }
+
+    @Test
+    public void residualConditions() {
+        index.register(SubscriptionFilter.builder().channel("cat").eq("color", "black").prefix("name", "to").build(), "blackCat");
+        index.register(SubscriptionFilter.builder().channel("cat").build(), "cat");
+        Assert.assertEquals(Arrays.asList("blackCat", "cat"), match("cat", "{\"color\":\"black\",\"name\":\"tom\"}"));
+        Assert.assertEquals(Collections.singleton(new HashSet<>(Arrays.asList("color", "name"))), new HashSet<>(loaded));
+        Assert.assertEquals(Collections.singletonList("cat"), match("cat", "{\"color\":\"white\",\"name\":\"tom\"}"));
+        Assert.assertEquals(Collections.singletonList("cat"), match("cat", "{\"color\":\"black\",\"name\":\"jerry\"}"));
+        Assert.assertEquals(Collections.singletonList("cat"), match("cat", "i am cat"));
+    }
+
+    @Test
+    public void payloadIndexAndUnindexed() {
+        index.register(SubscriptionFilter.builder().in("level", "warn", "error").build(), "alert");
+        index.register(SubscriptionFilter.builder().exists("level").build(), "leveled");
+        Assert.assertEquals(Arrays.asList("alert", "leveled"), match("log", "{\"level\":\"error\"}"));
+        Assert.assertEquals(Collections.singletonList("leveled"), match("log", "{\"level\":\"info\"}"));
+        Assert.assertEquals(Collections.emptyList(), match("log", "{\"other\":1}"));
+        Assert.assertEquals(Collections.emptyList(), match("log", "[1,2]"));
+    }
+
+    @Test
+    public void textComparison() {
+        index.register(SubscriptionFilter.builder().eq("n", "1").build(), "one");
+        Assert.assertEquals(Collections.singletonList("one"), match("c", "{\"n\":1}"));
+        Assert.assertEquals(Collections.singletonList("one"), match("c", "{\"n\":\"1\"}"));
+        // 按原始文本比较，不做数值归一化
+        Assert.assertEquals(Collections.emptyList(), match("c", "{\"n\":1.0}"));
+        Assert.assertEquals(Collections.emptyList(), match("c", "{\"n\":1e0}"));
+    }
+
+    @Test
+    public void unregister() {
+        index.register(SubscriptionFilter.builder().channel("cat").build(), "cat");
+        index.register(SubscriptionFilter.all(), "all");
+        Assert.assertEquals(Arrays.asList("cat", "all"), match("cat", null));
+        Assert.assertTrue(index.unregister("cat"));
+        Assert.assertFalse(index.unregister("cat"));
+        Assert.assertEquals(Collections.singletonList("all"), match("cat", null));
+        Assert.assertTrue(index.unregister("all"));
+        Assert.assertEquals(Collections.emptyList(), match("cat", null));
+    }
+
+    private List<String> match(String channel, String body) {
+        Map<String, String> fieldValues = new HashMap<>(8);
+        fieldValues.put(SubscriptionFilter.CHANNEL, channel);
+        List<String> matched = new ArrayList<>();
+        int count = index.match(fieldValues, fields -> {
+            loaded.add(fields);
+            if (body != null) {
+                PayloadFieldExtractor.extract(body.getBytes(), fields, fieldValues);
+            }
+        }, matched::add);
+        Assert.assertEquals(matched.size(), count);
+        return matched;
+    }
+}
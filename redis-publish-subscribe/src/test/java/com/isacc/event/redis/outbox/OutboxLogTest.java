@@ -0,0 +1,223 @@
+package com.isacc.event.redis.outbox;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * <p>
+ * outbox日志：崩溃恢复、分段滚动、删除已读的段、跳过损坏的记录
+ * </p>
+ *
+ * @author isacc 2019/09/11 16:30
+ * @since 1.0
+ */
+public class OutboxLogTest {
+
+    /**
+     * 一条记录 8 + 2 + 1 + 20 = 31字节，一个段放3条(段尾留4字节标记)
+     */
+    private static final int SEGMENT_SIZE = 100;
+    private static final int RECORD_SIZE = 31;
+
+    private Path directory;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("outbox-log");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path path : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    @Test
+    public void appendAndReadAcrossReopen() throws IOException {
+        try (OutboxLog log = open()) {
+            Assert.assertEquals(RECORD_SIZE, log.append(bytes("c"), message(0)));
+            Assert.assertEquals(RECORD_SIZE * 2, log.append(bytes("c"), message(1)));
+        }
+        try (OutboxLog log = open()) {
+            Assert.assertEquals(RECORD_SIZE * 2, log.getWriteOffset());
+            assertMessages(Arrays.asList(message(0), message(1)), readAll(log, 0L));
+        }
+    }
+
+    @Test
+    public void truncateTornRecord() throws IOException {
+        try (OutboxLog log = open()) {
+            log.append(bytes("c"), message(0));
+            log.append(bytes("c"), message(1));
+        }
+        // 第二条写到一半挂了：长度写了，消息体不完整，crc对不上
+        writeByte(segment(0L), RECORD_SIZE * 2 - 1, (byte) 'x');
+        try (OutboxLog log = open()) {
+            Assert.assertEquals(RECORD_SIZE, log.getWriteOffset());
+            assertMessages(Arrays.asList(message(0)), readAll(log, 0L));
+            // 截断后的位置可以继续写
+            log.append(bytes("c"), message(2));
+            assertMessages(Arrays.asList(message(0), message(2)), readAll(log, 0L));
+        }
+        try (OutboxLog log = open()) {
+            assertMessages(Arrays.asList(message(0), message(2)), readAll(log, 0L));
+        }
+    }
+
+    @Test
+    public void rollOverToNextSegment() throws IOException {
+        List<byte[]> expected = new ArrayList<>();
+        try (OutboxLog log = open()) {
+            for (int i = 0; i < 4; i++) {
+                expected.add(message(i));
+                log.append(bytes("c"), message(i));
+            }
+            Assert.assertEquals(SEGMENT_SIZE + RECORD_SIZE, log.getWriteOffset());
+            Assert.assertTrue(Files.exists(segment(SEGMENT_SIZE)));
+            assertMessages(expected, readAll(log, 0L));
+        }
+        try (OutboxLog log = open()) {
+            Assert.assertEquals(SEGMENT_SIZE + RECORD_SIZE, log.getWriteOffset());
+            assertMessages(expected, readAll(log, 0L));
+        }
+    }
+
+    @Test
+    public void recoverCrashAfterEndOfSegmentMarker() throws IOException {
+        try (OutboxLog log = open()) {
+            for (int i = 0; i < 3; i++) {
+                log.append(bytes("c"), message(i));
+            }
+        }
+        // 段结束标记写了，下一个段还没建出来就挂了
+        writeInt(segment(0L), RECORD_SIZE * 3, -1);
+        Assert.assertFalse(Files.exists(segment(SEGMENT_SIZE)));
+        try (OutboxLog log = open()) {
+            Assert.assertEquals(SEGMENT_SIZE, log.getWriteOffset());
+            Assert.assertTrue(Files.exists(segment(SEGMENT_SIZE)));
+            log.append(bytes("c"), message(3));
+            assertMessages(Arrays.asList(message(0), message(1), message(2), message(3)), readAll(log, 0L));
+        }
+    }
+
+    @Test
+    public void deleteBeforeKeepsActiveSegment() throws IOException {
+        try (OutboxLog log = open()) {
+            log.append(bytes("c"), message(0));
+            log.deleteBefore(log.getWriteOffset());
+            Assert.assertTrue(Files.exists(segment(0L)));
+            Assert.assertEquals(0L, log.getStartOffset());
+
+            for (int i = 1; i < 4; i++) {
+                log.append(bytes("c"), message(i));
+            }
+            long next = SEGMENT_SIZE;
+            log.deleteBefore(next);
+            Assert.assertFalse(Files.exists(segment(0L)));
+            Assert.assertTrue(Files.exists(segment(SEGMENT_SIZE)));
+            Assert.assertEquals(SEGMENT_SIZE, log.getStartOffset());
+            assertMessages(Arrays.asList(message(3)), readAll(log, next));
+
+            log.deleteBefore(log.getWriteOffset());
+            Assert.assertTrue(Files.exists(segment(SEGMENT_SIZE)));
+        }
+    }
+
+    @Test
+    public void skipCorruptedRecordInOldSegment() throws IOException {
+        try (OutboxLog log = open()) {
+            for (int i = 0; i < 4; i++) {
+                log.append(bytes("c"), message(i));
+            }
+        }
+        // 恢复只扫最后一个段，前面段的长度坏了也要能读，不能分配负数或越界的数组
+        for (int bodySize : new int[]{Integer.MAX_VALUE, -5, 1}) {
+            writeInt(segment(0L), RECORD_SIZE, bodySize);
+            try (OutboxLog log = open()) {
+                assertMessages(Arrays.asList(message(0), message(3)), readAll(log, 0L));
+            }
+        }
+        // 长度对但频道长度超出了记录
+        writeInt(segment(0L), RECORD_SIZE, RECORD_SIZE - 8);
+        writeByte(segment(0L), RECORD_SIZE + 8, (byte) 0x7f);
+        try (OutboxLog log = open()) {
+            assertMessages(Arrays.asList(message(0), message(3)), readAll(log, 0L));
+        }
+    }
+
+    @Test
+    public void skipMissingSegment() throws IOException {
+        try (OutboxLog log = open()) {
+            for (int i = 0; i < 4; i++) {
+                log.append(bytes("c"), message(i));
+            }
+            log.deleteBefore(SEGMENT_SIZE);
+            Assert.assertFalse(Files.exists(segment(0L)));
+            assertMessages(Arrays.asList(message(3)), readAll(log, 0L));
+        }
+    }
+
+    private OutboxLog open() throws IOException {
+        return new OutboxLog(directory, SEGMENT_SIZE);
+    }
+
+    private Path segment(long base) {
+        return directory.resolve(String.format("%020d.log", base));
+    }
+
+    private static List<byte[]> readAll(OutboxLog log, long offset) {
+        List<OutboxRecord> records = new ArrayList<>();
+        log.read(offset, Integer.MAX_VALUE, records);
+        return records.stream().map(OutboxRecord::getMessage).collect(Collectors.toList());
+    }
+
+    private static void assertMessages(List<byte[]> expected, List<byte[]> actual) {
+        Assert.assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Assert.assertArrayEquals(expected.get(i), actual.get(i));
+        }
+    }
+
+    private static byte[] message(int i) {
+        return bytes(String.format("message-%012d", i));
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void writeInt(Path path, int position, int value) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(4).putInt(value);
+        buffer.flip();
+        write(path, position, buffer);
+    }
+
+    private static void writeByte(Path path, int position, byte value) throws IOException {
+        write(path, position, ByteBuffer.wrap(new byte[]{value}));
+    }
+
+    private static void write(Path path, int position, ByteBuffer buffer) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.write(buffer, position);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.isacc.event.redis.outbox;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * <p>
+ * relay位置的持久化：offset和~offset不一致时当作没有记录
+ * </p>
+ *
+ * @author isacc 2019/09/11 16:50
+ * @since 1.0
+ */
+public class OutboxOffsetStoreTest {
+
+    private Path directory;
+    private Path path;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("outbox-offset");
+        path = directory.resolve("offset");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(path);
+        Files.deleteIfExists(directory);
+    }
+
+    @Test
+    public void emptyFile() throws IOException {
+        try (OutboxOffsetStore store = new OutboxOffsetStore(path)) {
+            Assert.assertEquals(-1L, store.load());
+        }
+    }
+
+    @Test
+    public void storeAndLoad() throws IOException {
+        try (OutboxOffsetStore store = new OutboxOffsetStore(path)) {
+            store.store(4096L);
+            store.store(8192L);
+            Assert.assertEquals(8192L, store.load());
+        }
+        try (OutboxOffsetStore store = new OutboxOffsetStore(path)) {
+            Assert.assertEquals(8192L, store.load());
+        }
+    }
+
+    @Test
+    public void tornWrite() throws IOException {
+        // 新的offset写了，~offset还是旧的
+        Files.write(path, ByteBuffer.allocate(16).putLong(8192L).putLong(~4096L).array());
+        try (OutboxOffsetStore store = new OutboxOffsetStore(path)) {
+            Assert.assertEquals(-1L, store.load());
+        }
+    }
+
+    @Test
+    public void shortFile() throws IOException {
+        Files.write(path, ByteBuffer.allocate(12).putLong(8192L).array());
+        try (OutboxOffsetStore store = new OutboxOffsetStore(path)) {
+            Assert.assertEquals(-1L, store.load());
+        }
+    }
+}
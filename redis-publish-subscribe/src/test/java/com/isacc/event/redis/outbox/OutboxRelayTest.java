@@ -0,0 +1,50 @@
+package com.isacc.event.redis.outbox;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+
+import org.junit.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+/**
+ * <p>
+ * relay线程遇到读日志的异常不会退出
+ * </p>
+ *
+ * @author isacc 2019/09/12 10:20
+ * @since 1.0
+ */
+public class OutboxRelayTest {
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void survivesReadError() throws IOException, InterruptedException {
+        OutboxLog outboxLog = Mockito.mock(OutboxLog.class);
+        OutboxOffsetStore offsetStore = Mockito.mock(OutboxOffsetStore.class);
+        StringRedisTemplate stringRedisTemplate = Mockito.mock(StringRedisTemplate.class);
+        Mockito.when(outboxLog.read(ArgumentMatchers.eq(0L), ArgumentMatchers.anyInt(), ArgumentMatchers.anyList()))
+                .thenThrow(new IllegalStateException("outbox segment not found for offset 0"))
+                .thenAnswer(invocation -> {
+                    ((List<OutboxRecord>) invocation.getArgument(2)).add(new OutboxRecord(0L, new byte[]{'c'}, new byte[]{'m'}));
+                    return 31L;
+                });
+        Mockito.doReturn(31L).when(outboxLog)
+                .read(ArgumentMatchers.eq(31L), ArgumentMatchers.anyInt(), ArgumentMatchers.anyList());
+        OutboxProperties properties = new OutboxProperties();
+        properties.setIdleInterval(Duration.ofMillis(1));
+        properties.setMaxRetryBackoff(Duration.ofMillis(100));
+        OutboxRelay relay = new OutboxRelay(outboxLog, offsetStore, stringRedisTemplate, properties, 0L);
+        Thread thread = new Thread(relay, "outbox-relay-test");
+        thread.start();
+        try {
+            Mockito.verify(offsetStore, Mockito.timeout(5000)).store(31L);
+            Mockito.verify(outboxLog, Mockito.timeout(5000)).deleteBefore(31L);
+        } finally {
+            relay.stop();
+            thread.join(5000);
+        }
+    }
+}
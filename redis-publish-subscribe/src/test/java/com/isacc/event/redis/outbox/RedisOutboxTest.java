@@ -0,0 +1,38 @@
+package com.isacc.event.redis.outbox;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * <p>
+ * relay启动位置
+ * </p>
+ *
+ * @author isacc 2019/09/11 17:05
+ * @since 1.0
+ */
+public class RedisOutboxTest {
+
+    @Test
+    public void noStoredOffsetStartsFromFirstSegment() {
+        Assert.assertEquals(0L, RedisOutbox.resolveReadOffset(-1L, 0L, 100L));
+        Assert.assertEquals(64L, RedisOutbox.resolveReadOffset(-1L, 64L, 100L));
+    }
+
+    @Test
+    public void storedOffsetWithinLog() {
+        Assert.assertEquals(80L, RedisOutbox.resolveReadOffset(80L, 64L, 100L));
+        Assert.assertEquals(100L, RedisOutbox.resolveReadOffset(100L, 64L, 100L));
+    }
+
+    @Test
+    public void storedOffsetBeforeDeletedSegments() {
+        Assert.assertEquals(64L, RedisOutbox.resolveReadOffset(10L, 64L, 100L));
+    }
+
+    @Test
+    public void storedOffsetAheadOfLostTail() {
+        // 掉电丢了未落盘的日志，offset文件却已经落盘
+        Assert.assertEquals(100L, RedisOutbox.resolveReadOffset(150L, 0L, 100L));
+    }
+}
@@ -0,0 +1,84 @@
+package com.isacc.event.redis.publish;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.isacc.event.trace.Tracer;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import reactor.core.publisher.Mono;
+
+/**
+ * <p>
+ * 响应式批量发布：接收者数量汇总，用mock的template，不需要redis
+ * </p>
+ *
+ * @author isacc 2019/09/06 15:50
+ * @since 1.0
+ */
+public class ReactiveBatchPublisherTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    private final ReactiveStringRedisTemplate template = Mockito.mock(ReactiveStringRedisTemplate.class);
+    private final ReactiveBatchPublisher publisher = new ReactiveBatchPublisher(template, 2);
+    private double sampleRate;
+
+    @Before
+    public void setUp() {
+        // 不采样，发出去的就是原消息
+        sampleRate = Tracer.getInstance().getSampleRate();
+        Tracer.getInstance().setSampleRate(0.0);
+        Mockito.when(template.convertAndSend(ArgumentMatchers.anyString(), ArgumentMatchers.anyString()))
+                .thenAnswer(invocation -> Mono.just("cat".equals(invocation.getArgument(0)) ? 2L : 1L));
+    }
+
+    @After
+    public void tearDown() {
+        Tracer.getInstance().setSampleRate(sampleRate);
+    }
+
+    @Test
+    public void sumReceiversAcrossChannels() {
+        Map<String, List<String>> channelMessages = new LinkedHashMap<>();
+        channelMessages.put("cat", Arrays.asList("a", "b", "c"));
+        channelMessages.put("fish", Collections.singletonList("d"));
+        Assert.assertEquals(Long.valueOf(7L), publisher.publishBatch(channelMessages).block(TIMEOUT));
+        for (String message : Arrays.asList("a", "b", "c")) {
+            Mockito.verify(template).convertAndSend("cat", message);
+        }
+        Mockito.verify(template).convertAndSend("fish", "d");
+    }
+
+    @Test
+    public void singleChannel() {
+        Assert.assertEquals(Long.valueOf(4L), publisher.publishBatch("cat", Arrays.asList("a", "b")).block(TIMEOUT));
+    }
+
+    @Test
+    public void emptyBatch() {
+        Assert.assertEquals(Long.valueOf(0L), publisher.publishBatch(Collections.emptyMap()).block(TIMEOUT));
+        Assert.assertEquals(Long.valueOf(0L), publisher.publishBatch("cat", Collections.emptyList()).block(TIMEOUT));
+        Mockito.verifyZeroInteractions(template);
+    }
+
+    @Test
+    public void failedPublishFailsBatch() {
+        Mockito.when(template.convertAndSend("fish", "d")).thenReturn(Mono.error(new IllegalStateException("down")));
+        try {
+            publisher.publishBatch("fish", Collections.singletonList("d")).block(TIMEOUT);
+            Assert.fail("publish error should fail the batch");
+        } catch (IllegalStateException e) {
+            Assert.assertEquals("down", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.isacc.event.redis.reactive;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import com.isacc.event.trace.SpanRecord;
+import com.isacc.event.trace.TraceContext;
+import com.isacc.event.trace.TraceEnvelope;
+import com.isacc.event.trace.Tracer;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+import org.springframework.data.redis.connection.ReactiveSubscription.Message;
+import org.springframework.data.redis.connection.ReactiveSubscription.PatternMessage;
+import org.springframework.data.redis.listener.PatternTopic;
+import org.springframework.data.redis.listener.ReactiveRedisMessageListenerContainer;
+import reactor.core.publisher.Flux;
+
+/**
+ * <p>
+ * 响应式订阅：溢出策略、出错后重新订阅、退避时间，用mock的容器，不需要redis
+ * </p>
+ *
+ * @author isacc 2019/09/06 15:30
+ * @since 1.0
+ */
+public class ReactiveChannelSubscriberTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    private final ReactiveRedisMessageListenerContainer container = Mockito.mock(ReactiveRedisMessageListenerContainer.class);
+    private final ReactiveSubscribeProperties properties = new ReactiveSubscribeProperties();
+    private final AtomicInteger subscriptions = new AtomicInteger();
+    private ReactiveChannelSubscriber subscriber;
+
+    @Before
+    public void setUp() {
+        properties.setBufferSize(4);
+        properties.setLimitRate(1);
+        properties.setRetryBackoff(Duration.ofMillis(1));
+        subscriber = new ReactiveChannelSubscriber(container, properties);
+    }
+
+    @After
+    public void tearDown() {
+        subscriber.destroy();
+    }
+
+    @Test
+    public void backoffCurve() {
+        Duration base = Duration.ofSeconds(1);
+        Duration max = Duration.ofSeconds(30);
+        Assert.assertEquals(Duration.ofSeconds(1), ReactiveChannelSubscriber.backoff(base, max, 0L));
+        Assert.assertEquals(Duration.ofSeconds(2), ReactiveChannelSubscriber.backoff(base, max, 1L));
+        Assert.assertEquals(Duration.ofSeconds(16), ReactiveChannelSubscriber.backoff(base, max, 4L));
+        Assert.assertEquals(max, ReactiveChannelSubscriber.backoff(base, max, 5L));
+        // 次数很大也不会溢出
+        Assert.assertEquals(max, ReactiveChannelSubscriber.backoff(base, max, Long.MAX_VALUE));
+    }
+
+    @Test
+    public void resubscribeAfterError() {
+        mockSource(Flux.defer(() -> subscriptions.incrementAndGet() == 1 ?
+                Flux.error(new IllegalStateException("connection reset")) : Flux.just(message("ok"))));
+        Assert.assertEquals("ok", subscriber.subscribe("cat").blockFirst(TIMEOUT));
+        Assert.assertEquals(2, subscriptions.get());
+    }
+
+    @Test
+    public void bufferOverflowResubscribes() {
+        // 第一次订阅上游一下子推很多，有界缓冲溢出报错，之后重新订阅
+        mockSource(Flux.defer(() -> subscriptions.incrementAndGet() == 1 ?
+                Flux.range(0, 10_000).map(i -> message("m" + i)) : Flux.just(message("ok"))));
+        List<String> received = subscriber.subscribe("cat").takeUntil("ok"::equals).collectList().block(TIMEOUT);
+        Assert.assertEquals("ok", received.get(received.size() - 1));
+        Assert.assertEquals(2, subscriptions.get());
+    }
+
+    @Test
+    public void perCallOverflowOverridesChannelConfig() {
+        properties.getChannelOverflow().put("cat", OverflowStrategy.BUFFER);
+        mockSource(Flux.defer(() -> {
+            subscriptions.incrementAndGet();
+            return Flux.range(0, 10_000).map(i -> message("m" + i)).concatWith(Flux.just(message("ok")));
+        }));
+        // 丢最老的，不会报错，最新的一条一定能收到
+        List<String> received = subscriber.subscribe(OverflowStrategy.DROP_OLDEST, "cat")
+                .takeUntil("ok"::equals).collectList().block(TIMEOUT);
+        Assert.assertEquals("ok", received.get(received.size() - 1));
+        Assert.assertTrue(received.size() < 10_001);
+        Assert.assertEquals(1, subscriptions.get());
+    }
+
+    @Test
+    public void channelOverflowIsUsedByDefault() {
+        properties.getChannelOverflow().put("cat", OverflowStrategy.LATEST);
+        mockSource(Flux.defer(() -> {
+            subscriptions.incrementAndGet();
+            return Flux.range(0, 10_000).map(i -> message("m" + i)).concatWith(Flux.just(message("ok")));
+        }));
+        List<Message<String, String>> received = subscriber.receive("cat")
+                .takeUntil(message -> "ok".equals(message.getMessage())).collectList().block(TIMEOUT);
+        Assert.assertEquals("ok", received.get(received.size() - 1).getMessage());
+        Assert.assertEquals("cat", received.get(0).getChannel());
+        Assert.assertEquals(1, subscriptions.get());
+    }
+
+    @Test
+    public void unwrapSampledMessage() {
+        double sampleRate = Tracer.getInstance().getSampleRate();
+        Tracer.getInstance().setSampleRate(1.0);
+        try {
+            TraceContext published = Tracer.getInstance().begin();
+            String wrapped = TraceEnvelope.wrap(published, "i am cat");
+            mockSource(Flux.just(message(wrapped)));
+
+            Message<String, String> received = subscriber.receive("cat").blockFirst(TIMEOUT);
+            Assert.assertEquals("i am cat", received.getMessage());
+            Assert.assertEquals("cat", received.getChannel());
+            Assert.assertEquals("cat", ((PatternMessage<?, ?, ?>) received).getPattern());
+            List<String> spans = Tracer.getInstance().snapshot(0L, published.getTraceId()).stream()
+                    .map(SpanRecord::getName)
+                    .collect(Collectors.toList());
+            Assert.assertEquals(Collections.singletonList("redis.reactive.receive"), spans);
+
+            // 交给FilteringMessageListener的保留包装，不记录接收的span
+            Assert.assertEquals(wrapped, subscriber.receiveWrapped("cat").blockFirst(TIMEOUT).getMessage());
+            Assert.assertEquals(1, Tracer.getInstance().snapshot(0L, published.getTraceId()).size());
+        } finally {
+            Tracer.getInstance().setSampleRate(sampleRate);
+        }
+    }
+
+    private void mockSource(Flux<PatternMessage<String, String, String>> source) {
+        Mockito.when(container.receive(ArgumentMatchers.<PatternTopic>any())).thenReturn(source);
+    }
+
+    private static PatternMessage<String, String, String> message(String body) {
+        return new PatternMessage<>("cat", "cat", body);
+    }
+}
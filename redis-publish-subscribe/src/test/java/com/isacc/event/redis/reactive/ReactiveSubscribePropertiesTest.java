@@ -0,0 +1,40 @@
+package com.isacc.event.redis.reactive;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * <p>
+ * 按频道选择溢出策略
+ * </p>
+ *
+ * @author isacc 2019/09/06 15:10
+ * @since 1.0
+ */
+public class ReactiveSubscribePropertiesTest {
+
+    private final ReactiveSubscribeProperties properties = new ReactiveSubscribeProperties();
+
+    @Test
+    public void defaultOverflow() {
+        Assert.assertEquals(OverflowStrategy.BUFFER, properties.overflowOf("cat"));
+        properties.setOverflow(OverflowStrategy.LATEST);
+        Assert.assertEquals(OverflowStrategy.LATEST, properties.overflowOf("cat"));
+    }
+
+    @Test
+    public void channelOverflow() {
+        properties.getChannelOverflow().put("fish", OverflowStrategy.DROP_OLDEST);
+        Assert.assertEquals(OverflowStrategy.DROP_OLDEST, properties.overflowOf("fish"));
+        Assert.assertEquals(OverflowStrategy.BUFFER, properties.overflowOf("cat"));
+    }
+
+    @Test
+    public void firstConfiguredPatternWins() {
+        properties.getChannelOverflow().put("fish", OverflowStrategy.DROP_OLDEST);
+        properties.getChannelOverflow().put("c*", OverflowStrategy.LATEST);
+        Assert.assertEquals(OverflowStrategy.DROP_OLDEST, properties.overflowOf("cat", "fish", "c*"));
+        Assert.assertEquals(OverflowStrategy.LATEST, properties.overflowOf("c*", "fish"));
+        Assert.assertEquals(OverflowStrategy.BUFFER, properties.overflowOf());
+    }
+}
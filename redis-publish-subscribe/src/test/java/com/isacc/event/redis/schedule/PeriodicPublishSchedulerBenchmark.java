@@ -0,0 +1,86 @@
+package com.isacc.event.redis.schedule;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * <p>
+ * 时间轮调度开销基准：1w个注册，周期100ms~1s，跑5s
+ * </p>
+ * <p>
+ * 名字不以Test结尾，默认不随构建执行，手动执行：mvn test -Dtest=PeriodicPublishSchedulerBenchmark
+ * </p>
+ *
+ * @author isacc 2019/09/16 16:02
+ * @since 1.0
+ */
+public class PeriodicPublishSchedulerBenchmark {
+
+    private static final int REGISTRATIONS = 10_000;
+    private static final long RUN_MILLIS = 5_000L;
+
+    @Test
+    public void schedule10kRegistrations() throws InterruptedException {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(4, 4, 1L, TimeUnit.MINUTES,
+                new ArrayBlockingQueue<>(1024), new ThreadPoolExecutor.AbortPolicy());
+        PeriodicPublishScheduler scheduler = new PeriodicPublishScheduler(executor, 10L, 512, 0.05, 64);
+        LongAdder executed = new LongAdder();
+        List<PeriodicPublishScheduler.Registration> registrations = new ArrayList<>(REGISTRATIONS);
+        double expected = 0;
+        scheduler.start();
+        long begin = System.nanoTime();
+        for (int i = 0; i < REGISTRATIONS; i++) {
+            long period = ThreadLocalRandom.current().nextLong(100L, 1001L);
+            expected += (double) RUN_MILLIS / period;
+            registrations.add(scheduler.schedule("channel-" + i, period, TimeUnit.MILLISECONDS, executed::increment));
+        }
+        long enqueueNanos = System.nanoTime() - begin;
+        // 注册在tick线程上才真正放进时间轮，等它处理完再统计
+        awaitCount(scheduler::getTransferred, REGISTRATIONS);
+
+        Thread.sleep(RUN_MILLIS);
+        long ticks = scheduler.getTicks();
+        long tickNanos = scheduler.getTotalTickNanos();
+
+        begin = System.nanoTime();
+        registrations.forEach(PeriodicPublishScheduler.Registration::cancel);
+        long cancelEnqueueNanos = System.nanoTime() - begin;
+        awaitCount(scheduler::getCancelled, REGISTRATIONS);
+        scheduler.stop();
+        executor.shutdown();
+        executor.awaitTermination(1L, TimeUnit.SECONDS);
+
+        long transferNanos = scheduler.getTransferNanos();
+        long cancelNanos = scheduler.getCancelNanos();
+        System.out.printf("registrations: %d, register: %d ns/op (enqueue %d + tick %d), cancel: %d ns/op (enqueue %d + tick %d)%n",
+                REGISTRATIONS,
+                (enqueueNanos + transferNanos) / REGISTRATIONS, enqueueNanos / REGISTRATIONS, transferNanos / REGISTRATIONS,
+                (cancelEnqueueNanos + cancelNanos) / REGISTRATIONS, cancelEnqueueNanos / REGISTRATIONS, cancelNanos / REGISTRATIONS);
+        System.out.printf("ticks: %d, avg tick: %d us, max tick: %d us, tick thread busy: %.2f%%%n",
+                ticks, tickNanos / Math.max(ticks, 1) / 1000, scheduler.getMaxTickNanos() / 1000,
+                tickNanos * 100.0 / TimeUnit.MILLISECONDS.toNanos(RUN_MILLIS));
+        System.out.printf("fired: %d, expected: %.0f, executed: %d, skipped: %d, rejected: %d%n",
+                scheduler.getFired(), expected, executed.sum(), scheduler.getSkipped(), scheduler.getRejected());
+
+        // 首次触发在一个周期内随机，按期望值的一半做下限即可
+        Assert.assertTrue(scheduler.getFired() > expected / 2);
+        Assert.assertEquals(0L, scheduler.getRejected());
+    }
+
+    private static void awaitCount(LongSupplier counter, long expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 1000L;
+        while (counter.getAsLong() < expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1L);
+        }
+        Assert.assertEquals(expected, counter.getAsLong());
+    }
+}
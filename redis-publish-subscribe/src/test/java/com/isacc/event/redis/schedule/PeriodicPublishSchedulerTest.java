@@ -0,0 +1,131 @@
+package com.isacc.event.redis.schedule;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * <p>
+ * 时间轮调度：不启动tick线程，直接调用advance驱动，首次触发固定在周期开始，没有抖动
+ * </p>
+ *
+ * @author isacc 2019/09/16 17:10
+ * @since 1.0
+ */
+public class PeriodicPublishSchedulerTest {
+
+    private static final long TICK_MILLIS = 10L;
+    private static final long TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(TICK_MILLIS);
+
+    /**
+     * 提交的worker任务先存起来，由测试决定什么时候执行
+     */
+    private final List<Runnable> submitted = new ArrayList<>();
+    /**
+     * 每次提交时所在的格
+     */
+    private final List<Long> firedTicks = new ArrayList<>();
+    private final PeriodicPublishScheduler scheduler =
+            new PeriodicPublishScheduler(this::submit, TICK_MILLIS, 8, 0.0, 64, () -> 0.0);
+    private int executed;
+
+    @Test
+    public void periodLongerThanWheel() {
+        // 250ms = 25格，时间轮只有8格，要转3圈多
+        scheduler.schedule("cat", 250L, TimeUnit.MILLISECONDS, this::execute);
+        advanceTo(80L, true);
+        Assert.assertEquals(Arrays.asList(1L, 26L, 51L, 76L), firedTicks);
+    }
+
+    @Test
+    public void cancelBeforeTransfer() {
+        PeriodicPublishScheduler.Registration registration =
+                scheduler.schedule("cat", 20L, TimeUnit.MILLISECONDS, this::execute);
+        registration.cancel();
+        Assert.assertTrue(registration.isCancelled());
+        advanceTo(10L, true);
+        Assert.assertEquals(Collections.emptyList(), firedTicks);
+        Assert.assertEquals(1L, scheduler.getCancelled());
+        Assert.assertEquals(1L, scheduler.getTransferred());
+    }
+
+    @Test
+    public void cancelAfterTransfer() {
+        PeriodicPublishScheduler.Registration registration =
+                scheduler.schedule("cat", 20L, TimeUnit.MILLISECONDS, this::execute);
+        advanceTo(4L, true);
+        Assert.assertEquals(Arrays.asList(1L, 3L), firedTicks);
+        registration.cancel();
+        advanceTo(20L, true);
+        Assert.assertEquals(Arrays.asList(1L, 3L), firedTicks);
+    }
+
+    @Test
+    public void skipOverlappingRun() {
+        scheduler.schedule("cat", 20L, TimeUnit.MILLISECONDS, this::execute);
+        // 第1格触发的任务一直没执行完，第3格、第5格的触发跳过
+        advanceTo(6L, false);
+        Assert.assertEquals(1, submitted.size());
+        Assert.assertEquals(1L, scheduler.getFired());
+        Assert.assertEquals(2L, scheduler.getSkipped());
+        runSubmitted();
+        Assert.assertEquals(1, executed);
+        // 跳过的触发照常排下一次，第7格正常触发
+        advanceTo(8L, false);
+        Assert.assertEquals(1, submitted.size());
+        Assert.assertEquals(2L, scheduler.getFired());
+        Assert.assertEquals(Arrays.asList(1L, 7L), firedTicks);
+    }
+
+    @Test
+    public void catchUpAfterStall() {
+        scheduler.schedule("cat", 50L, TimeUnit.MILLISECONDS, this::execute);
+        advanceTo(2L, true);
+        Assert.assertEquals(Collections.singletonList(1L), firedTicks);
+        // 第2格开始停顿到1s，停顿期间错过的触发不补发，只触发一次
+        long stalled = TimeUnit.MILLISECONDS.toNanos(1000L);
+        while (scheduler.getTicks() < 100L) {
+            scheduler.advance(stalled);
+            runSubmitted();
+        }
+        Assert.assertEquals(Arrays.asList(1L, 6L), firedTicks);
+        // 之后从停顿结束开始重新按周期触发
+        advanceTo(160L, true);
+        Assert.assertEquals(Arrays.asList(1L, 6L, 105L, 110L, 115L), firedTicks.subList(0, 5));
+    }
+
+    /**
+     * 按正常的时间推进到第tick格(不含)，和tick线程一样，第n格的当前时间是(n + 1) * tick
+     */
+    private void advanceTo(long tick, boolean runImmediately) {
+        while (scheduler.getTicks() < tick) {
+            scheduler.advance(TICK_NANOS * (scheduler.getTicks() + 1));
+            if (runImmediately) {
+                runSubmitted();
+            }
+        }
+    }
+
+    private void runSubmitted() {
+        List<Runnable> tasks = new ArrayList<>(submitted);
+        submitted.clear();
+        tasks.forEach(Runnable::run);
+    }
+
+    /**
+     * 在advance里调用，这时getTicks()还是当前格的下标
+     */
+    private void submit(Runnable task) {
+        firedTicks.add(scheduler.getTicks());
+        submitted.add(task);
+    }
+
+    private void execute() {
+        executed++;
+    }
+}
@@ -2,6 +2,7 @@ package com.isacc.event.spring.config;
 
 import java.util.concurrent.Executor;
 
+import com.isacc.event.trace.TraceTaskDecorator;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.aop.interceptor.AsyncUncaughtExceptionHandler;
 import org.springframework.context.annotation.Configuration;
@@ -35,6 +36,8 @@ public class ListenerAsyncConfiguration implements AsyncConfigurer {
         threadPool.setWaitForTasksToCompleteOnShutdown(true);
         // 线程名称前缀
         threadPool.setThreadNamePrefix("CoreTaskExecutor");
+        // 把发布线程上被采样的追踪上下文带到监听器线程
+        threadPool.setTaskDecorator(new TraceTaskDecorator());
         // 初始化线程
         threadPool.initialize();
         return threadPool;
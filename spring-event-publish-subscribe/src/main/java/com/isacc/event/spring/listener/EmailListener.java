@@ -1,5 +1,6 @@
 package com.isacc.event.spring.listener;
 
+import com.isacc.event.trace.Tracer;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.event.EventListener;
 import org.springframework.core.annotation.Order;
@@ -20,7 +21,12 @@ public class EmailListener {
     @Async
     @Order(1)
     public void handlerMessage(String message) {
-        // 发送消息
-        log.info("email：{}", message);
+        long start = Tracer.nanoTime();
+        try {
+            // 发送消息
+            log.debug("email：{}", message);
+        } finally {
+            Tracer.getInstance().recordChild(Tracer.current(), "spring.email", start);
+        }
     }
 }
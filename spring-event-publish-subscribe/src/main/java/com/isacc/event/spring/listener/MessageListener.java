@@ -1,5 +1,6 @@
 package com.isacc.event.spring.listener;
 
+import com.isacc.event.trace.Tracer;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.event.EventListener;
 import org.springframework.core.annotation.Order;
@@ -20,9 +21,14 @@ public class MessageListener {
     @Async
     @Order(0)
     public void handlerMessage(String message) {
-        // 发送消息
-        log.info("message：{}", message);
-        throw new ArrayIndexOutOfBoundsException("message error");
+        long start = Tracer.nanoTime();
+        try {
+            // 发送消息
+            log.debug("message：{}", message);
+            throw new ArrayIndexOutOfBoundsException("message error");
+        } finally {
+            Tracer.getInstance().recordChild(Tracer.current(), "spring.message", start);
+        }
     }
 
 }
@@ -1,5 +1,7 @@
 package com.isacc.event.spring.service;
 
+import com.isacc.event.trace.TraceContext;
+import com.isacc.event.trace.Tracer;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.ApplicationContext;
 import org.springframework.stereotype.Service;
@@ -24,7 +26,16 @@ public class SomeService {
         // 主业务的逻辑
         log.info("do something：{}", thing);
         // 发布事件，让订阅者去处理，异步处理，不然还是当前线程处理，有异常会报错，若是有事务，会回滚的
-        context.publishEvent(thing);
+        // 采样到的话追踪上下文放到当前线程上，由TraceTaskDecorator带到监听器线程
+        TraceContext traceContext = Tracer.getInstance().begin();
+        long start = Tracer.nanoTime();
+        Tracer.setCurrent(traceContext);
+        try {
+            context.publishEvent(thing);
+        } finally {
+            Tracer.clearCurrent();
+            Tracer.getInstance().recordRoot(traceContext, "spring.publish", start);
+        }
         log.info("do something done");
     }
 }
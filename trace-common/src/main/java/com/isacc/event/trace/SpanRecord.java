@@ -0,0 +1,74 @@
+package com.isacc.event.trace;
+
+/**
+ * <p>
+ * 导出用的span，只在快照时创建
+ * </p>
+ *
+ * @author isacc 2019/09/18 11:10
+ * @since 1.0
+ */
+public class SpanRecord {
+
+    private final String name;
+    private final String traceId;
+    private final String spanId;
+    private final String parentId;
+    private final long startMicros;
+    private final long durationMicros;
+    private final long lagMicros;
+
+    SpanRecord(String name, long traceId, long spanId, long parentId,
+               long startMicros, long durationNanos, long lagMicros) {
+        this.name = name;
+        this.traceId = TraceContext.toHex(traceId);
+        this.spanId = TraceContext.toHex(spanId);
+        this.parentId = parentId == 0L ? null : TraceContext.toHex(parentId);
+        this.startMicros = startMicros;
+        this.durationMicros = durationNanos / 1000L;
+        this.lagMicros = lagMicros;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getTraceId() {
+        return traceId;
+    }
+
+    public String getSpanId() {
+        return spanId;
+    }
+
+    /**
+     * 上一跳的spanId，根span为null
+     */
+    public String getParentId() {
+        return parentId;
+    }
+
+    /**
+     * 开始时间，epoch微秒
+     */
+    public long getStartMicros() {
+        return startMicros;
+    }
+
+    public long getDurationMicros() {
+        return durationMicros;
+    }
+
+    /**
+     * 从上一跳开始到这一跳开始的耗时(微秒)，即扇出/传输延迟，根span为0
+     */
+    public long getLagMicros() {
+        return lagMicros;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s trace=%s span=%s parent=%s start=%d duration=%dus lag=%dus",
+                name, traceId, spanId, parentId, startMicros, durationMicros, lagMicros);
+    }
+}
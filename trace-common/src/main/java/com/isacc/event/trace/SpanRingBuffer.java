@@ -0,0 +1,145 @@
+package com.isacc.event.trace;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * <p>
+ * 预分配的无锁span环形缓冲
+ * </p>
+ * <p>
+ * 每个字段一个数组，写入时领一个序号，按序号取模写到对应的槽，写满了覆盖最老的，记录一个span不分配对象；
+ * 写字段前先把槽的序号从更早的序号CAS成{@link #CLAIMED}，写完再写回自己的序号，读的时候前后两次序号一致才算读到完整的span
+ * </p>
+ * <p>
+ * 环绕一圈后两个写线程可能落到同一个槽：CAS失败(另一个写线程正在写)或者槽里已经是更新的序号时直接丢弃这个span，
+ * 不会交错写出字段混杂的span
+ * </p>
+ *
+ * @author isacc 2019/09/18 10:40
+ * @since 1.0
+ */
+public class SpanRingBuffer {
+
+    private static final int FIELDS = 6;
+    /**
+     * 槽正在被写
+     */
+    private static final long CLAIMED = Long.MIN_VALUE;
+    private static final int TRACE_ID = 0;
+    private static final int SPAN_ID = 1;
+    private static final int PARENT_ID = 2;
+    private static final int START_MICROS = 3;
+    private static final int DURATION_NANOS = 4;
+    private static final int LAG_MICROS = 5;
+
+    private final int mask;
+    private final AtomicLong cursor = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLongArray sequences;
+    private final AtomicLongArray fields;
+    private final AtomicReferenceArray<String> names;
+
+    /**
+     * @param capacity 容量，会向上取整到2的幂
+     */
+    public SpanRingBuffer(int capacity) {
+        int size = Math.max(Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1, 2);
+        this.mask = size - 1;
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, -1L);
+        }
+        this.fields = new AtomicLongArray(size * FIELDS);
+        this.names = new AtomicReferenceArray<>(size);
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+
+    /**
+     * 因为槽被占用而丢弃的span数
+     */
+    public long dropped() {
+        return dropped.get();
+    }
+
+    /**
+     * 写入一个span
+     *
+     * @param name 跳的名字，用常量，不要拼接
+     */
+    public void write(String name, long traceId, long spanId, long parentId,
+                      long startMicros, long durationNanos, long lagMicros) {
+        long sequence = cursor.getAndIncrement();
+        int slot = (int) (sequence & mask);
+        if (!claim(slot, sequence)) {
+            dropped.incrementAndGet();
+            return;
+        }
+        int base = slot * FIELDS;
+        names.lazySet(slot, name);
+        fields.lazySet(base + TRACE_ID, traceId);
+        fields.lazySet(base + SPAN_ID, spanId);
+        fields.lazySet(base + PARENT_ID, parentId);
+        fields.lazySet(base + START_MICROS, startMicros);
+        fields.lazySet(base + DURATION_NANOS, durationNanos);
+        fields.lazySet(base + LAG_MICROS, lagMicros);
+        sequences.lazySet(slot, sequence);
+    }
+
+    /**
+     * 槽里是更早的、已经写完的序号才能占用
+     */
+    private boolean claim(int slot, long sequence) {
+        while (true) {
+            long current = sequences.get(slot);
+            if (current == CLAIMED || current >= sequence) {
+                return false;
+            }
+            if (sequences.compareAndSet(slot, current, CLAIMED)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 快照，从旧到新
+     *
+     * @param minDurationNanos 只要耗时不小于这个值的
+     * @param traceId          只要这个trace的，0表示不过滤
+     * @return span
+     */
+    public List<SpanRecord> snapshot(long minDurationNanos, long traceId) {
+        long end = cursor.get();
+        long begin = Math.max(0L, end - capacity());
+        List<SpanRecord> records = new ArrayList<>();
+        for (long sequence = begin; sequence < end; sequence++) {
+            int slot = (int) (sequence & mask);
+            int base = slot * FIELDS;
+            if (sequences.get(slot) != sequence) {
+                continue;
+            }
+            String name = names.get(slot);
+            long spanTraceId = fields.get(base + TRACE_ID);
+            long spanId = fields.get(base + SPAN_ID);
+            long parentId = fields.get(base + PARENT_ID);
+            long startMicros = fields.get(base + START_MICROS);
+            long durationNanos = fields.get(base + DURATION_NANOS);
+            long lagMicros = fields.get(base + LAG_MICROS);
+            // 读的过程中被覆盖了
+            if (sequences.get(slot) != sequence) {
+                continue;
+            }
+            if (durationNanos < minDurationNanos || (traceId != 0L && traceId != spanTraceId)) {
+                continue;
+            }
+            records.add(new SpanRecord(name, spanTraceId, spanId, parentId, startMicros, durationNanos, lagMicros));
+        }
+        return records;
+    }
+}
@@ -0,0 +1,30 @@
+package com.isacc.event.trace;
+
+import com.isacc.event.trace.web.TraceController;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * <p>
+ * 追踪自动配置，设置采样率，web应用注册span快照接口
+ * </p>
+ *
+ * @author isacc 2019/09/18 15:05
+ * @since 1.0
+ */
+@Configuration
+@EnableConfigurationProperties(TraceProperties.class)
+public class TraceAutoConfiguration {
+
+    public TraceAutoConfiguration(TraceProperties traceProperties) {
+        Tracer.getInstance().setSampleRate(traceProperties.getSampleRate());
+    }
+
+    @Bean
+    @ConditionalOnWebApplication
+    TraceController traceController() {
+        return new TraceController(Tracer.getInstance());
+    }
+}
@@ -0,0 +1,147 @@
+package com.isacc.event.trace;
+
+/**
+ * <p>
+ * 跨跳传递的追踪上下文：traceId、上一跳的spanId、上一跳的时间(微秒)
+ * </p>
+ * <p>
+ * 编码成固定48个十六进制字符，只有被采样的消息才会带上；没被采样的统一用{@link #NOT_SAMPLED}，不分配对象
+ * </p>
+ *
+ * @author isacc 2019/09/18 10:05
+ * @since 1.0
+ */
+public final class TraceContext {
+
+    /**
+     * 编码后的长度
+     */
+    public static final int ENCODED_LENGTH = 48;
+
+    public static final TraceContext NOT_SAMPLED = new TraceContext(0L, 0L, 0L);
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final long traceId;
+    private final long spanId;
+    private final long timestampMicros;
+
+    TraceContext(long traceId, long spanId, long timestampMicros) {
+        this.traceId = traceId;
+        this.spanId = spanId;
+        this.timestampMicros = timestampMicros;
+    }
+
+    public boolean isSampled() {
+        return traceId != 0L;
+    }
+
+    public long getTraceId() {
+        return traceId;
+    }
+
+    public long getSpanId() {
+        return spanId;
+    }
+
+    public long getTimestampMicros() {
+        return timestampMicros;
+    }
+
+    /**
+     * 编码
+     *
+     * @return 48个十六进制字符，没被采样返回null
+     */
+    public String encode() {
+        if (!isSampled()) {
+            return null;
+        }
+        char[] chars = new char[ENCODED_LENGTH];
+        writeHex(chars, 0, traceId);
+        writeHex(chars, 16, spanId);
+        writeHex(chars, 32, timestampMicros);
+        return new String(chars);
+    }
+
+    /**
+     * 解码，格式不对返回{@link #NOT_SAMPLED}
+     *
+     * @param source 包含编码的字符序列
+     * @param offset 编码开始的位置
+     * @return TraceContext
+     */
+    public static TraceContext decode(CharSequence source, int offset) {
+        if (source == null || source.length() < offset + ENCODED_LENGTH) {
+            return NOT_SAMPLED;
+        }
+        long traceId = readHex(source, offset);
+        long spanId = readHex(source, offset + 16);
+        long timestamp = readHex(source, offset + 32);
+        if (traceId <= 0L || spanId <= 0L || timestamp < 0L) {
+            return NOT_SAMPLED;
+        }
+        return new TraceContext(traceId, spanId, timestamp);
+    }
+
+    /**
+     * 从字节解码，只处理ascii，避免先转成String
+     */
+    public static TraceContext decode(byte[] source, int offset) {
+        if (source == null || source.length < offset + ENCODED_LENGTH) {
+            return NOT_SAMPLED;
+        }
+        long traceId = readHex(source, offset);
+        long spanId = readHex(source, offset + 16);
+        long timestamp = readHex(source, offset + 32);
+        if (traceId <= 0L || spanId <= 0L || timestamp < 0L) {
+            return NOT_SAMPLED;
+        }
+        return new TraceContext(traceId, spanId, timestamp);
+    }
+
+    static String toHex(long value) {
+        char[] chars = new char[16];
+        writeHex(chars, 0, value);
+        return new String(chars);
+    }
+
+    private static void writeHex(char[] chars, int offset, long value) {
+        for (int i = 15; i >= 0; i--) {
+            chars[offset + i] = HEX[(int) (value & 0xF)];
+            value >>>= 4;
+        }
+    }
+
+    /**
+     * 非法字符时返回-1，id和时间都是正数
+     */
+    private static long readHex(CharSequence source, int offset) {
+        long value = 0L;
+        for (int i = 0; i < 16; i++) {
+            int digit = Character.digit(source.charAt(offset + i), 16);
+            if (digit < 0) {
+                return -1L;
+            }
+            value = (value << 4) | digit;
+        }
+        return value;
+    }
+
+    private static long readHex(byte[] source, int offset) {
+        long value = 0L;
+        for (int i = 0; i < 16; i++) {
+            int digit = Character.digit(source[offset + i], 16);
+            if (digit < 0) {
+                return -1L;
+            }
+            value = (value << 4) | digit;
+        }
+        return value;
+    }
+
+    @Override
+    public String toString() {
+        return isSampled() ? encode() : "not sampled";
+    }
+}
@@ -0,0 +1,75 @@
+package com.isacc.event.trace;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * <p>
+ * 把追踪上下文注入到消息体里
+ * </p>
+ * <p>
+ * 格式为 0x1E + 48位上下文 + 0x1E + 原消息，只有被采样的消息才会包装，
+ * 没被采样的消息原样发送，接收方不认识包装的也只是多了个前缀
+ * </p>
+ *
+ * @author isacc 2019/09/18 14:05
+ * @since 1.0
+ */
+public final class TraceEnvelope {
+
+    public static final char MARKER = '\u001E';
+    private static final int HEADER_LENGTH = TraceContext.ENCODED_LENGTH + 2;
+
+    private TraceEnvelope() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    public static String wrap(TraceContext context, String body) {
+        if (!context.isSampled()) {
+            return body;
+        }
+        return MARKER + context.encode() + MARKER + body;
+    }
+
+    public static byte[] wrap(TraceContext context, byte[] body) {
+        if (!context.isSampled()) {
+            return body;
+        }
+        byte[] header = wrap(context, "").getBytes(StandardCharsets.US_ASCII);
+        byte[] payload = Arrays.copyOf(header, header.length + body.length);
+        System.arraycopy(body, 0, payload, header.length, body.length);
+        return payload;
+    }
+
+    public static boolean isWrapped(String payload) {
+        return payload != null && payload.length() >= HEADER_LENGTH
+                && payload.charAt(0) == MARKER && payload.charAt(HEADER_LENGTH - 1) == MARKER;
+    }
+
+    public static boolean isWrapped(byte[] payload) {
+        return payload != null && payload.length >= HEADER_LENGTH
+                && payload[0] == MARKER && payload[HEADER_LENGTH - 1] == MARKER;
+    }
+
+    public static TraceContext context(String payload) {
+        return isWrapped(payload) ? TraceContext.decode(payload, 1) : TraceContext.NOT_SAMPLED;
+    }
+
+    public static TraceContext context(byte[] payload) {
+        return isWrapped(payload) ? TraceContext.decode(payload, 1) : TraceContext.NOT_SAMPLED;
+    }
+
+    /**
+     * 去掉包装，没包装的原样返回
+     */
+    public static String body(String payload) {
+        return isWrapped(payload) ? payload.substring(HEADER_LENGTH) : payload;
+    }
+
+    /**
+     * 去掉包装，没包装的原样返回
+     */
+    public static byte[] body(byte[] payload) {
+        return isWrapped(payload) ? Arrays.copyOfRange(payload, HEADER_LENGTH, payload.length) : payload;
+    }
+}
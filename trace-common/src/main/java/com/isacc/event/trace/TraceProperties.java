@@ -0,0 +1,22 @@
+package com.isacc.event.trace;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * <p>
+ * 追踪配置
+ * </p>
+ *
+ * @author isacc 2019/09/18 15:00
+ * @since 1.0
+ */
+@Data
+@ConfigurationProperties(prefix = "isacc.trace")
+public class TraceProperties {
+
+    /**
+     * 采样率，0~1
+     */
+    private double sampleRate = Tracer.getInstance().getSampleRate();
+}
@@ -0,0 +1,33 @@
+package com.isacc.event.trace;
+
+import org.springframework.core.task.TaskDecorator;
+
+/**
+ * <p>
+ * 把发布线程上的追踪上下文带到异步线程上，比如&#64;Async的事件监听器
+ * </p>
+ * <p>
+ * 没被采样时原样返回任务，不做包装
+ * </p>
+ *
+ * @author isacc 2019/09/18 14:40
+ * @since 1.0
+ */
+public class TraceTaskDecorator implements TaskDecorator {
+
+    @Override
+    public Runnable decorate(Runnable runnable) {
+        TraceContext context = Tracer.current();
+        if (!context.isSampled()) {
+            return runnable;
+        }
+        return () -> {
+            Tracer.setCurrent(context);
+            try {
+                runnable.run();
+            } finally {
+                Tracer.clearCurrent();
+            }
+        };
+    }
+}
@@ -0,0 +1,146 @@
+package com.isacc.event.trace;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * <p>
+ * 追踪入口
+ * </p>
+ * <p>
+ * 在发布的源头按采样率做一次决定(head-based)，没被采样的消息全程拿到的都是{@link TraceContext#NOT_SAMPLED}，
+ * 不编码、不注入、不记录，开销只有一次随机数；被采样的消息每一跳记录一个span到{@link SpanRingBuffer}
+ * </p>
+ * <p>
+ * 采样率和缓冲大小可以用系统属性isacc.trace.sample-rate、isacc.trace.buffer-size指定，
+ * spring boot应用里也可以用配置isacc.trace.sample-rate
+ * </p>
+ *
+ * @author isacc 2019/09/18 11:30
+ * @since 1.0
+ */
+public final class Tracer {
+
+    public static final String SAMPLE_RATE_PROPERTY = "isacc.trace.sample-rate";
+    public static final String BUFFER_SIZE_PROPERTY = "isacc.trace.buffer-size";
+
+    private static final Tracer INSTANCE = new Tracer(Integer.getInteger(BUFFER_SIZE_PROPERTY, 8192),
+            Double.parseDouble(System.getProperty(SAMPLE_RATE_PROPERTY, "0.01")));
+    private static final ThreadLocal<TraceContext> CURRENT = new ThreadLocal<>();
+
+    private final SpanRingBuffer buffer;
+    private final long baseEpochMicros;
+    private final long baseNanos;
+    private volatile double sampleRate;
+
+    private Tracer(int bufferSize, double sampleRate) {
+        this.buffer = new SpanRingBuffer(bufferSize);
+        this.baseEpochMicros = System.currentTimeMillis() * 1000L;
+        this.baseNanos = System.nanoTime();
+        this.sampleRate = sampleRate;
+    }
+
+    public static Tracer getInstance() {
+        return INSTANCE;
+    }
+
+    public static long nanoTime() {
+        return System.nanoTime();
+    }
+
+    /**
+     * 当前线程上的追踪上下文
+     *
+     * @return 没有时返回{@link TraceContext#NOT_SAMPLED}
+     */
+    public static TraceContext current() {
+        TraceContext context = CURRENT.get();
+        return context == null ? TraceContext.NOT_SAMPLED : context;
+    }
+
+    /**
+     * 设置当前线程上的追踪上下文，用完要{@link #clearCurrent()}
+     */
+    public static void setCurrent(TraceContext context) {
+        if (context.isSampled()) {
+            CURRENT.set(context);
+        } else {
+            CURRENT.remove();
+        }
+    }
+
+    public static void clearCurrent() {
+        CURRENT.remove();
+    }
+
+    public double getSampleRate() {
+        return sampleRate;
+    }
+
+    public void setSampleRate(double sampleRate) {
+        this.sampleRate = sampleRate;
+    }
+
+    /**
+     * 在发布的源头开始一个trace
+     *
+     * @return 被采样时返回新的上下文，否则返回{@link TraceContext#NOT_SAMPLED}
+     */
+    public TraceContext begin() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (random.nextDouble() >= sampleRate) {
+            return TraceContext.NOT_SAMPLED;
+        }
+        return new TraceContext(random.nextLong(1L, Long.MAX_VALUE),
+                random.nextLong(1L, Long.MAX_VALUE),
+                epochMicros(System.nanoTime()));
+    }
+
+    /**
+     * 记录源头的span(比如发布)，spanId就是上下文的spanId
+     *
+     * @param context    {@link #begin()}的返回值
+     * @param name       跳的名字，用常量
+     * @param startNanos {@link #nanoTime()}
+     */
+    public void recordRoot(TraceContext context, String name, long startNanos) {
+        if (!context.isSampled()) {
+            return;
+        }
+        long now = System.nanoTime();
+        buffer.write(name, context.getTraceId(), context.getSpanId(), 0L,
+                epochMicros(startNanos), now - startNanos, 0L);
+    }
+
+    /**
+     * 记录下游的span(比如处理消息)，父span是上一跳
+     *
+     * @param parent     上一跳传过来的上下文
+     * @param name       跳的名字，用常量
+     * @param startNanos {@link #nanoTime()}
+     */
+    public void recordChild(TraceContext parent, String name, long startNanos) {
+        if (!parent.isSampled()) {
+            return;
+        }
+        long now = System.nanoTime();
+        long startMicros = epochMicros(startNanos);
+        buffer.write(name, parent.getTraceId(), ThreadLocalRandom.current().nextLong(1L, Long.MAX_VALUE),
+                parent.getSpanId(), startMicros, now - startNanos, startMicros - parent.getTimestampMicros());
+    }
+
+    /**
+     * 导出缓冲里的span
+     *
+     * @param minDurationMicros 只要耗时不小于这个值的，用来找慢的跳
+     * @param traceId           只要这个trace的，0表示不过滤
+     * @return span，从旧到新
+     */
+    public List<SpanRecord> snapshot(long minDurationMicros, long traceId) {
+        return buffer.snapshot(minDurationMicros * 1000L, traceId);
+    }
+
+    private long epochMicros(long nanos) {
+        return baseEpochMicros + (nanos - baseNanos) / 1000L;
+    }
+}
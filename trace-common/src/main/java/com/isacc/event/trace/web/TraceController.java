@@ -0,0 +1,50 @@
+package com.isacc.event.trace.web;
+
+import java.util.List;
+import java.util.regex.Pattern;
+
+import com.isacc.event.trace.SpanRecord;
+import com.isacc.event.trace.Tracer;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * <p>
+ * span快照接口
+ * </p>
+ *
+ * @author isacc 2019/09/18 15:20
+ * @since 1.0
+ */
+@RestController
+@RequestMapping("/trace")
+public class TraceController {
+
+    private static final Pattern TRACE_ID = Pattern.compile("[0-9a-fA-F]{1,16}");
+
+    private final Tracer tracer;
+
+    public TraceController(Tracer tracer) {
+        this.tracer = tracer;
+    }
+
+    /**
+     * 导出缓冲里的span，按traceId把各个服务的span拼起来就能看到扇出延迟
+     *
+     * @param minDurationMicros 只要耗时不小于这个值的，用来找慢的跳
+     * @param traceId           只要这个trace的(1~16位十六进制)，格式不对返回400
+     * @return span，从旧到新
+     */
+    @GetMapping("/spans")
+    public List<SpanRecord> spans(@RequestParam(defaultValue = "0") long minDurationMicros,
+                                  @RequestParam(required = false) String traceId) {
+        if (traceId != null && !TRACE_ID.matcher(traceId).matches()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "traceId must be 1-16 hex characters: " + traceId);
+        }
+        return tracer.snapshot(minDurationMicros, traceId == null ? 0L : Long.parseUnsignedLong(traceId, 16));
+    }
+}
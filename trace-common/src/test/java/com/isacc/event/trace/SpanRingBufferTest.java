@@ -0,0 +1,116 @@
+package com.isacc.event.trace;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * <p>
+ * span环形缓冲：覆盖、顺序、过滤，并发写入时不会读到字段混杂的span
+ * </p>
+ *
+ * @author isacc 2019/09/18 16:10
+ * @since 1.0
+ */
+public class SpanRingBufferTest {
+
+    @Test
+    public void capacityRoundsUpToPowerOfTwo() {
+        Assert.assertEquals(8, new SpanRingBuffer(5).capacity());
+        Assert.assertEquals(8, new SpanRingBuffer(8).capacity());
+        Assert.assertEquals(2, new SpanRingBuffer(0).capacity());
+    }
+
+    @Test
+    public void overwriteOldest() {
+        SpanRingBuffer buffer = new SpanRingBuffer(4);
+        for (long i = 1; i <= 6; i++) {
+            buffer.write("span", 1L, i, 0L, i, 0L, 0L);
+        }
+        List<Long> starts = buffer.snapshot(0L, 0L).stream()
+                .map(SpanRecord::getStartMicros)
+                .collect(Collectors.toList());
+        // 从旧到新，最早的两个被覆盖
+        Assert.assertEquals(Arrays.asList(3L, 4L, 5L, 6L), starts);
+        Assert.assertEquals(0L, buffer.dropped());
+    }
+
+    @Test
+    public void snapshotBeforeFull() {
+        SpanRingBuffer buffer = new SpanRingBuffer(8);
+        Assert.assertTrue(buffer.snapshot(0L, 0L).isEmpty());
+        buffer.write("a", 1L, 2L, 0L, 10L, 0L, 0L);
+        buffer.write("b", 1L, 3L, 2L, 11L, 0L, 5L);
+        List<SpanRecord> records = buffer.snapshot(0L, 0L);
+        Assert.assertEquals(2, records.size());
+        Assert.assertEquals("a", records.get(0).getName());
+        Assert.assertNull(records.get(0).getParentId());
+        Assert.assertEquals("b", records.get(1).getName());
+        Assert.assertEquals(TraceContext.toHex(2L), records.get(1).getParentId());
+        Assert.assertEquals(5L, records.get(1).getLagMicros());
+    }
+
+    @Test
+    public void filterByDurationAndTraceId() {
+        SpanRingBuffer buffer = new SpanRingBuffer(16);
+        buffer.write("fast", 1L, 1L, 0L, 0L, 1_000L, 0L);
+        buffer.write("slow", 1L, 2L, 0L, 0L, 5_000_000L, 0L);
+        buffer.write("other", 2L, 3L, 0L, 0L, 5_000_000L, 0L);
+        Assert.assertEquals(3, buffer.snapshot(0L, 0L).size());
+        Assert.assertEquals(Arrays.asList("slow", "other"), names(buffer.snapshot(1_000_000L, 0L)));
+        Assert.assertEquals(Arrays.asList("fast", "slow"), names(buffer.snapshot(0L, 1L)));
+        Assert.assertEquals(Collections.singletonList("slow"), names(buffer.snapshot(1_000_000L, 1L)));
+        Assert.assertTrue(buffer.snapshot(0L, 3L).isEmpty());
+    }
+
+    @Test
+    public void concurrentWritesNeverInterleave() throws InterruptedException {
+        // 缓冲很小，写线程频繁在同一个槽上相遇；单核机器上很难触发竞争，多核上才有意义
+        SpanRingBuffer buffer = new SpanRingBuffer(2);
+        int writers = 8;
+        int writes = 200_000;
+        AtomicBoolean done = new AtomicBoolean();
+        CountDownLatch finished = new CountDownLatch(writers);
+        for (int w = 0; w < writers; w++) {
+            long high = (long) (w + 1) << 32;
+            new Thread(() -> {
+                for (int i = 0; i < writes; i++) {
+                    // 一个span的所有字段都是同一个值，读到不一致就是被交错写了
+                    long value = high | i;
+                    buffer.write("span", value, value, value, value, value * 1000L, value);
+                }
+                finished.countDown();
+            }).start();
+        }
+        List<String> inconsistent = new ArrayList<>();
+        Thread reader = new Thread(() -> {
+            while (!done.get()) {
+                for (SpanRecord record : buffer.snapshot(0L, 0L)) {
+                    String expected = TraceContext.toHex(record.getStartMicros());
+                    if (!expected.equals(record.getTraceId()) || !expected.equals(record.getSpanId())
+                            || !expected.equals(record.getParentId()) || record.getStartMicros() != record.getLagMicros()
+                            || record.getStartMicros() != record.getDurationMicros()) {
+                        inconsistent.add(record.toString());
+                    }
+                }
+            }
+        });
+        reader.start();
+        finished.await();
+        done.set(true);
+        reader.join();
+        Assert.assertTrue(inconsistent.toString(), inconsistent.isEmpty());
+        Assert.assertTrue(buffer.snapshot(0L, 0L).size() <= buffer.capacity());
+    }
+
+    private static List<String> names(List<SpanRecord> records) {
+        return records.stream().map(SpanRecord::getName).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,64 @@
+package com.isacc.event.trace;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * <p>
+ * 追踪上下文的编码/解码
+ * </p>
+ *
+ * @author isacc 2019/09/18 16:30
+ * @since 1.0
+ */
+public class TraceContextTest {
+
+    private final TraceContext context = new TraceContext(0x1234L, Long.MAX_VALUE, 1568793600000000L);
+
+    @Test
+    public void encodeFixedLength() {
+        String encoded = context.encode();
+        Assert.assertEquals(TraceContext.ENCODED_LENGTH, encoded.length());
+        Assert.assertEquals("0000000000001234" + "7fffffffffffffff" + "000592cf39410000", encoded);
+        Assert.assertNull(TraceContext.NOT_SAMPLED.encode());
+    }
+
+    @Test
+    public void decodeString() {
+        assertSame(context, TraceContext.decode(context.encode(), 0));
+        assertSame(context, TraceContext.decode("xx" + context.encode() + "body", 2));
+        // 大写也认
+        assertSame(context, TraceContext.decode(context.encode().toUpperCase(), 0));
+    }
+
+    @Test
+    public void decodeBytes() {
+        byte[] bytes = ("x" + context.encode()).getBytes(StandardCharsets.US_ASCII);
+        assertSame(context, TraceContext.decode(bytes, 1));
+    }
+
+    @Test
+    public void malformed() {
+        String encoded = context.encode();
+        Assert.assertSame(TraceContext.NOT_SAMPLED, TraceContext.decode((String) null, 0));
+        Assert.assertSame(TraceContext.NOT_SAMPLED, TraceContext.decode((byte[]) null, 0));
+        Assert.assertSame(TraceContext.NOT_SAMPLED, TraceContext.decode(encoded.substring(1), 0));
+        Assert.assertSame(TraceContext.NOT_SAMPLED, TraceContext.decode(encoded, 1));
+        Assert.assertSame(TraceContext.NOT_SAMPLED, TraceContext.decode("g" + encoded.substring(1), 0));
+        // traceId为0表示没被采样
+        Assert.assertSame(TraceContext.NOT_SAMPLED, TraceContext.decode(TraceContext.toHex(0L) + encoded.substring(16), 0));
+        // 最高位为1的id不合法
+        Assert.assertSame(TraceContext.NOT_SAMPLED, TraceContext.decode(TraceContext.toHex(-1L) + encoded.substring(16), 0));
+        Assert.assertSame(TraceContext.NOT_SAMPLED,
+                TraceContext.decode("g".getBytes(StandardCharsets.US_ASCII), 0));
+    }
+
+    private static void assertSame(TraceContext expected, TraceContext actual) {
+        Assert.assertTrue(actual.isSampled());
+        Assert.assertEquals(expected.getTraceId(), actual.getTraceId());
+        Assert.assertEquals(expected.getSpanId(), actual.getSpanId());
+        Assert.assertEquals(expected.getTimestampMicros(), actual.getTimestampMicros());
+    }
+}
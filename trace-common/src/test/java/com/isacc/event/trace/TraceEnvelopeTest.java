@@ -0,0 +1,79 @@
+package com.isacc.event.trace;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * <p>
+ * 消息体的追踪包装
+ * </p>
+ *
+ * @author isacc 2019/09/18 16:45
+ * @since 1.0
+ */
+public class TraceEnvelopeTest {
+
+    private final TraceContext context = new TraceContext(7L, 8L, 9L);
+
+    @Test
+    public void wrapAndUnwrapString() {
+        String wrapped = TraceEnvelope.wrap(context, "i am cat");
+        Assert.assertTrue(TraceEnvelope.isWrapped(wrapped));
+        Assert.assertEquals(TraceContext.ENCODED_LENGTH + 2 + "i am cat".length(), wrapped.length());
+        Assert.assertEquals("i am cat", TraceEnvelope.body(wrapped));
+        TraceContext decoded = TraceEnvelope.context(wrapped);
+        Assert.assertEquals(7L, decoded.getTraceId());
+        Assert.assertEquals(8L, decoded.getSpanId());
+        Assert.assertEquals(9L, decoded.getTimestampMicros());
+    }
+
+    @Test
+    public void wrapAndUnwrapBytes() {
+        byte[] body = "{\"a\":1}".getBytes(StandardCharsets.UTF_8);
+        byte[] wrapped = TraceEnvelope.wrap(context, body);
+        Assert.assertTrue(TraceEnvelope.isWrapped(wrapped));
+        Assert.assertArrayEquals(body, TraceEnvelope.body(wrapped));
+        Assert.assertEquals(7L, TraceEnvelope.context(wrapped).getTraceId());
+        // 和String版本的格式一致
+        Assert.assertEquals(TraceEnvelope.wrap(context, "{\"a\":1}"), new String(wrapped, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void emptyBody() {
+        Assert.assertEquals("", TraceEnvelope.body(TraceEnvelope.wrap(context, "")));
+        Assert.assertArrayEquals(new byte[0], TraceEnvelope.body(TraceEnvelope.wrap(context, new byte[0])));
+    }
+
+    @Test
+    public void notSampledIsNotWrapped() {
+        String body = "i am cat";
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        Assert.assertSame(body, TraceEnvelope.wrap(TraceContext.NOT_SAMPLED, body));
+        Assert.assertSame(bytes, TraceEnvelope.wrap(TraceContext.NOT_SAMPLED, bytes));
+    }
+
+    @Test
+    public void plainPayloadPassesThrough() {
+        String body = "i am cat";
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        Assert.assertFalse(TraceEnvelope.isWrapped(body));
+        Assert.assertFalse(TraceEnvelope.isWrapped((String) null));
+        Assert.assertSame(body, TraceEnvelope.body(body));
+        Assert.assertSame(bytes, TraceEnvelope.body(bytes));
+        Assert.assertSame(TraceContext.NOT_SAMPLED, TraceEnvelope.context(body));
+        Assert.assertSame(TraceContext.NOT_SAMPLED, TraceEnvelope.context(bytes));
+        // 以标记开头但是太短
+        Assert.assertFalse(TraceEnvelope.isWrapped(TraceEnvelope.MARKER + "abc"));
+    }
+
+    @Test
+    public void corruptedHeader() {
+        String wrapped = TraceEnvelope.wrap(context, "i am cat");
+        String corrupted = wrapped.substring(0, 1) + "z" + wrapped.substring(2);
+        Assert.assertTrue(TraceEnvelope.isWrapped(corrupted));
+        Assert.assertSame(TraceContext.NOT_SAMPLED, TraceEnvelope.context(corrupted));
+        Assert.assertEquals("i am cat", TraceEnvelope.body(corrupted));
+    }
+}
@@ -3,15 +3,19 @@ package com.isacc.event.zk;
 import java.util.Objects;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.isacc.event.trace.TraceContext;
+import com.isacc.event.trace.Tracer;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.curator.RetryPolicy;
 import org.apache.curator.framework.CuratorFramework;
 import org.apache.curator.framework.CuratorFrameworkFactory;
 import org.apache.curator.framework.api.CuratorWatcher;
+import org.apache.curator.framework.recipes.cache.ChildData;
 import org.apache.curator.framework.recipes.cache.PathChildrenCache;
 import org.apache.curator.framework.recipes.cache.PathChildrenCacheEvent;
 import org.apache.curator.retry.ExponentialBackoffRetry;
 import org.apache.curator.utils.CloseableUtils;
+import org.apache.curator.utils.ZKPaths;
 import org.apache.zookeeper.CreateMode;
 import org.apache.zookeeper.Watcher;
 import org.apache.zookeeper.data.Stat;
@@ -33,6 +37,10 @@ public class ZookeeperConnectorByCurator implements Runnable {
      * 配置文件存放的节点
      */
     private static final String CONF_PATH = "/configuration";
+    /**
+     * 追踪上下文存放的节点，和CONF_PATH的子节点一一对应，业务节点的数据保持原样
+     */
+    private static final String TRACE_PATH = "/trace" + CONF_PATH;
     /**
      * zk的url
      */
@@ -57,6 +65,9 @@ public class ZookeeperConnectorByCurator implements Runnable {
                 // 重新赋值
                 zkClient.setData().forPath(CONF_PATH, "192.168.11.200".getBytes());
             }
+            if (Objects.isNull(zkClient.checkExists().forPath(TRACE_PATH))) {
+                zkClient.create().creatingParentContainersIfNeeded().withMode(CreateMode.PERSISTENT).forPath(TRACE_PATH);
+            }
         } catch (Exception e) {
             log.error("create node error", e);
         }
@@ -68,31 +79,35 @@ public class ZookeeperConnectorByCurator implements Runnable {
         String initData;
         // 创建PathChildrenCache
         PathChildrenCache pathChildrenCache = new PathChildrenCache(zkClient, CONF_PATH, true);
+        PathChildrenCache traceCache = new PathChildrenCache(zkClient, TRACE_PATH, true);
         try {
+            traceCache.start(PathChildrenCache.StartMode.BUILD_INITIAL_CACHE);
             initData = new String(zkClient.getData().forPath(CONF_PATH));
             // 2. 设置watch
             log.info("=======开始监听，初始值为：{}=======", initData);
             // useWatcher();
             // useCuratorWatcher();
-            usePathChildrenCache(pathChildrenCache);
+            usePathChildrenCache(pathChildrenCache, traceCache);
             // 3. 更新值
             log.info("=======更新或新增值=======");
             // PathChildrenCache对指定的路径节点的一级子目录进行监听，不对该节点的操作进行监听，对其子目录的节点进行增、删、改的操作监听
             zkClient.setData().forPath(CONF_PATH, "192.168.11.227".getBytes());
-            // 为了方便测试 添加临时节点
-            zkClient.create().withMode(CreateMode.EPHEMERAL).forPath(CONF_PATH + "/kettle", "KETTLE".getBytes());
-            zkClient.create().withMode(CreateMode.EPHEMERAL).forPath(CONF_PATH + "/datax", "DATAX".getBytes());
+            // 为了方便测试 添加临时节点，被采样的节点在TRACE_PATH下建一个同名节点存追踪上下文
+            createTraced(CONF_PATH + "/kettle", "KETTLE");
+            createTraced(CONF_PATH + "/datax", "DATAX");
             Thread.sleep(3000L);
             // 4. 删除值
             log.info("=======删除值=======");
-            zkClient.delete().forPath(CONF_PATH + "/kettle");
+            deleteTraced(CONF_PATH + "/kettle");
             // 等待3秒，看是否监听成功
             Thread.sleep(3000L);
+            Tracer.getInstance().snapshot(0L, 0L).forEach(span -> log.info("span: {}", span));
         } catch (Exception e) {
             log.error("get data error", e);
         } finally {
             // 关闭
             CloseableUtils.closeQuietly(pathChildrenCache);
+            CloseableUtils.closeQuietly(traceCache);
             CloseableUtils.closeQuietly(zkClient);
         }
     }
@@ -131,7 +146,7 @@ public class ZookeeperConnectorByCurator implements Runnable {
      * 3) TreeCache:  可以将指定的路径节点作为根节点（祖先节点），对其所有的子节点操作进行监听，呈现树形目录的监听，可以设置监听深度，最大监听深度为2147483647（int类型的最大值）。
      * </p>
      */
-    private void usePathChildrenCache(PathChildrenCache pathChildrenCache) throws Exception {
+    private void usePathChildrenCache(PathChildrenCache pathChildrenCache, PathChildrenCache traceCache) throws Exception {
         // 触发INITIALIZED类型的事件，其他的与NORMAL一致
         pathChildrenCache.start(PathChildrenCache.StartMode.POST_INITIALIZED_EVENT);
         // 添加监听事件
@@ -139,15 +154,53 @@ public class ZookeeperConnectorByCurator implements Runnable {
                     if (pathChildrenCacheEvent.getType() == PathChildrenCacheEvent.Type.INITIALIZED) {
                         log.info("PathChildrenCache初始化");
                     } else {
-                        log.info(String.format("pathChildrenCache发生的节点变化类型为：%s,发生变化的节点内容为：%s,路径：%s",
+                        long start = Tracer.nanoTime();
+                        String path = pathChildrenCacheEvent.getData().getPath();
+                        TraceContext traceContext = traceContextOf(traceCache, path);
+                        log.info("pathChildrenCache发生的节点变化类型为：{},发生变化的节点内容为：{},路径：{}",
                                 pathChildrenCacheEvent.getType(),
                                 new String(pathChildrenCacheEvent.getData().getData()),
-                                pathChildrenCacheEvent.getData().getPath()));
+                                path);
+                        Tracer.getInstance().recordChild(traceContext, "zk.handle", start);
                     }
                 }
         );
     }
 
+    /**
+     * 创建临时节点，节点数据不动；被采样的话先在TRACE_PATH下建同名的临时节点存追踪上下文，
+     * 监听方收到业务节点的事件时从本地的traceCache里找
+     */
+    private void createTraced(String path, String data) throws Exception {
+        TraceContext traceContext = Tracer.getInstance().begin();
+        long start = Tracer.nanoTime();
+        if (traceContext.isSampled()) {
+            zkClient.create().withMode(CreateMode.EPHEMERAL).forPath(tracePathOf(path), traceContext.encode().getBytes());
+        }
+        zkClient.create().withMode(CreateMode.EPHEMERAL).forPath(path, data.getBytes());
+        Tracer.getInstance().recordRoot(traceContext, "zk.publish", start);
+    }
+
+    /**
+     * 删除节点，连同追踪上下文节点
+     */
+    private void deleteTraced(String path) throws Exception {
+        zkClient.delete().forPath(path);
+        zkClient.delete().quietly().forPath(tracePathOf(path));
+    }
+
+    /**
+     * 尽力而为：追踪节点的缓存还没同步到、或者已经删除时当作没被采样
+     */
+    private TraceContext traceContextOf(PathChildrenCache traceCache, String path) {
+        ChildData traceData = traceCache.getCurrentData(tracePathOf(path));
+        return traceData == null || traceData.getData() == null ?
+                TraceContext.NOT_SAMPLED : TraceContext.decode(traceData.getData(), 0);
+    }
+
+    private static String tracePathOf(String path) {
+        return ZKPaths.makePath(TRACE_PATH, ZKPaths.getNodeFromPath(path));
+    }
 
     public static void main(String[] args) {
         ZookeeperConnectorByCurator zookeeperConnectorByCurator = new ZookeeperConnectorByCurator();